@@ -0,0 +1,43 @@
+package js3.benchmarks;
+
+import js3.util.Coding;
+import js3.util.HTTP;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The encoders on the request path: encodeURI for every path and query, encodeHex for every
+ * digest and signature.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+    @Param({"photos/2023/06/IMG_0001.jpg", "reports/Q2 r\u00e9sum\u00e9 (final) & notes.pdf"})
+    public String key;
+
+    private byte[] digest;
+
+    @Setup
+    public void setup() {
+        digest = new byte[32];
+        ThreadLocalRandom.current().nextBytes(digest);
+    }
+
+    @Benchmark
+    public String encodeURI() {
+        return HTTP.encodeURI(key, false);
+    }
+
+    @Benchmark
+    public String encodeHex() {
+        return Coding.encodeHex(digest);
+    }
+
+}
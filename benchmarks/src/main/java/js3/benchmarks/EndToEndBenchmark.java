@@ -0,0 +1,79 @@
+package js3.benchmarks;
+
+import js3.S3Client;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole calls through the client against an in-process stub, so the numbers are the cost of the
+ * client and the loopback http stack without network latency. Run with -t to vary the number of
+ * threads, RunAll does so for a range of thread counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private static final String BUCKET = "benchmark";
+    private static final int LISTED_KEYS = 1000;
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    private StubS3Server server;
+    private S3Client client;
+    private byte[] data;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new StubS3Server();
+        data = new byte[size];
+        ThreadLocalRandom.current().nextBytes(data);
+        server.putObject(BUCKET, "object", data);
+        for (int i = 0; i < LISTED_KEYS; i++) server.putObject(BUCKET, String.format("listed/%05d", i), new byte[0]);
+
+        final URI endpoint = server.getEndpoint();
+        client = new S3Client() {
+            public URI getS3Endpoint() {
+                return endpoint;
+            }
+            public String getS3Region() {
+                return "us-east-1";
+            }
+            public String getS3AccessKey() {
+                return "benchmark";
+            }
+            public String getS3SecretKey() {
+                return "benchmark";
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public byte[] get() throws IOException {
+        return client.getS3ObjectData(BUCKET, "object");
+    }
+
+    @Benchmark
+    public void put() throws IOException {
+        client.putS3Object(BUCKET, "uploaded/" + Thread.currentThread().getId(), data, "application/octet-stream");
+    }
+
+    @Benchmark
+    public int list() throws IOException {
+        return client.listS3Objects(BUCKET, "listed/").size();
+    }
+
+}
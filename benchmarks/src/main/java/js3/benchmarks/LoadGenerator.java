@@ -0,0 +1,266 @@
+package js3.benchmarks;
+
+import js3.S3Client;
+import js3.S3Exception;
+import js3.S3PayloadMode;
+import js3.metrics.LatencyHistogram;
+import js3.metrics.S3MetricsCollector;
+import js3.metrics.S3RequestListener;
+import js3.retry.AdaptiveConcurrencyLimiter;
+import js3.retry.S3RetryPolicy;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Drives a mixed workload through the client from many threads for a fixed time and reports the
+ * throughput and latency per operation. Without an endpoint it starts an embedded StubS3Server,
+ * whose latency and throttling can be set, so the client can be measured and tuned on a laptop.
+ * Pointed at a real endpoint it measures that instead; the bucket must exist there.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar js3.benchmarks.LoadGenerator [options]
+ * <pre>
+ *   --endpoint=url           S3 endpoint, default an embedded stub
+ *   --region, --access-key, --secret-key
+ *   --bucket=loadgen         Bucket to work in
+ *   --threads=16             Concurrent callers
+ *   --duration=30            Seconds to measure, after --warmup=5 seconds
+ *   --size=65536             Object size in bytes
+ *   --objects=100            Number of objects read by get, head and copy
+ *   --mix=get:70,put:20,head:5,list:5
+ *                            Weights of get, put, head, list, copy and delete
+ *   --no-retry               Surface every failure instead of retrying
+ *   --adaptive=max           Limit concurrency adaptively between 1 and max
+ *   --payload=signed         Payload mode: signed, unsigned, crc32c or crc32
+ *   --stub-latency-ms, --stub-jitter-ms, --stub-max-concurrency, --stub-error-rate
+ *   --json=file              Also write the results as JSON
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private static final String PREFIX = "load/";
+
+    private enum Operation { get, put, head, list, copy, delete }
+
+    public static void main(final String... args) throws Exception {
+        final Map<String, String> options = StubS3Server.parseOptions(args);
+        final String bucket = options.getOrDefault("bucket", "loadgen");
+        final int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        final Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5")));
+        final Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        final int size = Integer.parseInt(options.getOrDefault("size", "65536"));
+        final int objects = Integer.parseInt(options.getOrDefault("objects", "100"));
+        final Operation[] mix = parseMix(options.getOrDefault("mix", "get:70,put:20,head:5,list:5"));
+
+        final StubS3Server stub = options.containsKey("endpoint") ? null : new StubS3Server.Builder()
+            .withLatency(Duration.ofMillis(Long.parseLong(options.getOrDefault("stub-latency-ms", "0"))),
+                Duration.ofMillis(Long.parseLong(options.getOrDefault("stub-jitter-ms", "0"))))
+            .withMaxConcurrency(Integer.parseInt(options.getOrDefault("stub-max-concurrency", "0")))
+            .withErrorRate(Double.parseDouble(options.getOrDefault("stub-error-rate", "0")))
+            .build();
+        try {
+            final URI endpoint = stub == null ? URI.create(options.get("endpoint")) : stub.getEndpoint();
+            final String region = options.getOrDefault("region", "us-east-1");
+            final String accessKey = options.getOrDefault("access-key", "loadgen");
+            final String secretKey = options.getOrDefault("secret-key", "loadgen");
+            final S3RetryPolicy retryPolicy = options.containsKey("no-retry") ? S3RetryPolicy.NEVER : null;
+            final AdaptiveConcurrencyLimiter limiter = options.containsKey("adaptive")
+                ? new AdaptiveConcurrencyLimiter(threads, 1, Integer.parseInt(options.get("adaptive"))) : null;
+            final S3PayloadMode payloadMode = S3PayloadMode.valueOf(options.getOrDefault("payload", "signed").toUpperCase());
+            final S3MetricsCollector metrics = new S3MetricsCollector();
+            final S3Client client = new S3Client() {
+                public URI getS3Endpoint() {
+                    return endpoint;
+                }
+                public String getS3Region() {
+                    return region;
+                }
+                public String getS3AccessKey() {
+                    return accessKey;
+                }
+                public String getS3SecretKey() {
+                    return secretKey;
+                }
+                public S3RetryPolicy getS3RetryPolicy() {
+                    return retryPolicy == null ? S3Client.super.getS3RetryPolicy() : retryPolicy;
+                }
+                public AdaptiveConcurrencyLimiter getS3ConcurrencyLimiter() {
+                    return limiter;
+                }
+                public S3PayloadMode getS3PayloadMode() {
+                    return payloadMode;
+                }
+                public S3RequestListener getS3RequestListener() {
+                    return metrics;
+                }
+            };
+
+            final byte[] data = new byte[size];
+            ThreadLocalRandom.current().nextBytes(data);
+            if (stub != null) stub.createBucket(bucket);
+            for (int i = 0; i < objects; i++) client.putS3Object(bucket, objectKey(i), data, "application/octet-stream");
+
+            System.out.printf("Running %s against %s with %d threads, %d byte objects%n",
+                options.getOrDefault("mix", "get:70,put:20,head:5,list:5"), endpoint, threads, size);
+            run(client, bucket, data, objects, mix, threads, warmup, null);
+            metrics.reset();
+            final Map<Operation, Stats> results = new LinkedHashMap<>();
+            for (final Operation operation : Operation.values()) results.put(operation, new Stats());
+            final long elapsed = run(client, bucket, data, objects, mix, threads, duration, results);
+
+            final String report = report(results, elapsed);
+            System.out.println(report);
+            System.out.println("Client view per request, including retries:");
+            System.out.println(metrics.report());
+            if (stub != null) System.out.printf("Stub served %d requests, %d answered with 503%n",
+                stub.getRequestCount(), stub.getThrottledCount());
+            if (limiter != null) System.out.printf("Adaptive concurrency limit ended at %d%n", limiter.getLimit());
+            if (options.containsKey("json")) Files.writeString(Path.of(options.get("json")), toJson(results, elapsed, size));
+        } finally {
+            if (stub != null) stub.close();
+        }
+    }
+
+    private static long run(final S3Client client, final String bucket, final byte[] data, final int objects,
+                            final Operation[] mix, final int threads, final Duration duration,
+                            final Map<Operation, Stats> results) throws InterruptedException {
+        final long start = System.nanoTime();
+        final long end = start + duration.toNanos();
+        final List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final String scratch = "scratch/" + i;
+            final Thread worker = new Thread(() -> {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    final Operation operation = mix[random.nextInt(mix.length)];
+                    final String key = objectKey(random.nextInt(objects));
+                    final long began = System.nanoTime();
+                    long bytes = 0;
+                    Exception failure = null;
+                    try {
+                        bytes = execute(client, operation, bucket, key, scratch, data);
+                    } catch (Exception e) {
+                        failure = e;
+                    }
+                    if (results != null) results.get(operation).record(System.nanoTime() - began, bytes, failure);
+                }
+            }, "load-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        for (final Thread worker : workers) worker.join();
+        return System.nanoTime() - start;
+    }
+
+    private static long execute(final S3Client client, final Operation operation, final String bucket,
+                                final String key, final String scratch, final byte[] data) throws IOException {
+        switch (operation) {
+            case get:
+                return client.getS3ObjectData(bucket, key).length;
+            case put:
+                client.putS3Object(bucket, key, data, "application/octet-stream");
+                return data.length;
+            case head:
+                client.getS3ObjectMetaData(bucket, key);
+                return 0;
+            case list:
+                client.listS3Objects(bucket, PREFIX);
+                return 0;
+            case copy:
+                client.copyS3Object(bucket, key, scratch);
+                return 0;
+            case delete:
+                client.removeS3Object(bucket, scratch);
+                return 0;
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    private static String objectKey(final int index) {
+        return String.format("%s%06d", PREFIX, index);
+    }
+
+    private static Operation[] parseMix(final String mix) {
+        final List<Operation> weighted = new ArrayList<>();
+        for (final String part : mix.split(",")) {
+            final String[] nameAndWeight = part.trim().split(":");
+            final Operation operation = Operation.valueOf(nameAndWeight[0].toLowerCase(Locale.ROOT));
+            final int weight = nameAndWeight.length > 1 ? Integer.parseInt(nameAndWeight[1]) : 1;
+            for (int i = 0; i < weight; i++) weighted.add(operation);
+        }
+        if (weighted.isEmpty()) throw new IllegalArgumentException("The mix contains no operations");
+        return weighted.toArray(new Operation[0]);
+    }
+
+    private static String report(final Map<Operation, Stats> results, final long elapsed) {
+        final double seconds = elapsed / 1e9;
+        final var report = new StringBuilder(String.format("%-8s %10s %10s %10s %10s %10s %10s %8s%n",
+            "op", "ops/s", "MB/s", "p50 us", "p90 us", "p99 us", "max us", "errors"));
+        for (final var entry : results.entrySet()) {
+            final Stats stats = entry.getValue();
+            if (stats.latency.getCount() == 0) continue;
+            report.append(String.format(Locale.ROOT, "%-8s %10.1f %10.2f %10d %10d %10d %10d %8d%n", entry.getKey(),
+                stats.latency.getCount() / seconds, stats.bytes.sum() / seconds / (1024 * 1024),
+                stats.latency.getPercentile(50, MICROSECONDS), stats.latency.getPercentile(90, MICROSECONDS),
+                stats.latency.getPercentile(99, MICROSECONDS), stats.latency.getMax(MICROSECONDS), stats.errors.sum()));
+            for (final var error : stats.errorTypes.entrySet()) {
+                report.append(String.format("  %6d x %s%n", error.getValue().sum(), error.getKey()));
+            }
+        }
+        return report.toString();
+    }
+
+    private static String toJson(final Map<Operation, Stats> results, final long elapsed, final int size) {
+        final double seconds = elapsed / 1e9;
+        final var json = new StringBuilder("{\"seconds\":").append(seconds).append(",\"size\":").append(size)
+            .append(",\"operations\":{");
+        String separator = "";
+        for (final var entry : results.entrySet()) {
+            final Stats stats = entry.getValue();
+            if (stats.latency.getCount() == 0) continue;
+            json.append(separator).append('"').append(entry.getKey()).append("\":{")
+                .append("\"count\":").append(stats.latency.getCount())
+                .append(",\"opsPerSecond\":").append(stats.latency.getCount() / seconds)
+                .append(",\"bytesPerSecond\":").append(stats.bytes.sum() / seconds)
+                .append(",\"p50Micros\":").append(stats.latency.getPercentile(50, MICROSECONDS))
+                .append(",\"p90Micros\":").append(stats.latency.getPercentile(90, MICROSECONDS))
+                .append(",\"p99Micros\":").append(stats.latency.getPercentile(99, MICROSECONDS))
+                .append(",\"maxMicros\":").append(stats.latency.getMax(MICROSECONDS))
+                .append(",\"errors\":").append(stats.errors.sum()).append('}');
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    private static final class Stats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final Map<String, LongAdder> errorTypes = new ConcurrentHashMap<>();
+
+        private void record(final long nanos, final long bytes, final Exception failure) {
+            latency.record(nanos);
+            this.bytes.add(bytes);
+            if (failure == null) return;
+            errors.increment();
+            final String type = failure instanceof S3Exception
+                ? "http " + ((S3Exception) failure).statusCode : failure.getClass().getSimpleName();
+            errorTypes.computeIfAbsent(type, k -> new LongAdder()).increment();
+        }
+    }
+
+}
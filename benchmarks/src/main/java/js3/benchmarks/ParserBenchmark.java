@@ -0,0 +1,39 @@
+package js3.benchmarks;
+
+import js3.internal.S3ResponseParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Parses ListObjectsV2 pages of the size S3 returns by default.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"1000"})
+    public int keys;
+
+    private byte[] page;
+
+    @Setup
+    public void setup() {
+        page = StubS3Server.toListingXml("benchmark", "", keys).getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public String parseListing(final Blackhole blackhole) throws IOException {
+        return S3ResponseParser.parseObjectsList(new ByteArrayInputStream(page), blackhole::consume, blackhole::consume);
+    }
+
+}
@@ -0,0 +1,59 @@
+package js3.benchmarks;
+
+import js3.buffer.S3BufferPool;
+import js3.util.HTTP;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers response bodies of different sizes. The stream hands out at most 8 KB per read, like a
+ * socket does, so the benchmark also covers the growing of the buffer. Bodies of unknown length
+ * are read with the default pool and without one, bodies with a Content-Length go straight into
+ * an array of the right size. Run with -prof gc to see the allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadFullyBenchmark {
+
+    @Param({"1024", "65536", "1048576", "16777216"})
+    public int size;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        data = new byte[size];
+    }
+
+    @Benchmark
+    public byte[] readFully() throws IOException {
+        return HTTP.readFully(new SocketLikeInputStream(data));
+    }
+
+    @Benchmark
+    public byte[] readFullyUnpooled() throws IOException {
+        return HTTP.readFully(new SocketLikeInputStream(data), -1, S3BufferPool.NONE);
+    }
+
+    @Benchmark
+    public byte[] readFullyPresized() throws IOException {
+        return HTTP.readFully(new SocketLikeInputStream(data), data.length, S3BufferPool.NONE);
+    }
+
+    private static final class SocketLikeInputStream extends ByteArrayInputStream {
+        private SocketLikeInputStream(final byte[] data) {
+            super(data);
+        }
+        public synchronized int read(final byte[] buffer, final int offset, final int length) {
+            return super.read(buffer, offset, Math.min(length, 8192));
+        }
+    }
+
+}
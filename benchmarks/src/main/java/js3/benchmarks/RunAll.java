@@ -0,0 +1,47 @@
+package js3.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the micro benchmarks once and the end-to-end benchmark for every thread count, writing
+ * one JSON result file per run to the output directory, for comparing releases. The micro
+ * benchmarks include the allocation rate per operation from the GC profiler.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar js3.benchmarks.RunAll [output directory] [thread counts]
+ * <br>
+ * The defaults are target/jmh and 1,4,16.
+ */
+public final class RunAll {
+
+    public static void main(final String... args) throws RunnerException {
+        final File output = new File(args.length > 0 ? args[0] : "target/jmh");
+        final String[] threadCounts = (args.length > 1 ? args[1] : "1,4,16").split(",");
+        if (!output.isDirectory() && !output.mkdirs()) throw new IllegalArgumentException("Can not create " + output);
+
+        new Runner(new OptionsBuilder()
+            .include(SigningBenchmark.class.getSimpleName())
+            .include(EncodingBenchmark.class.getSimpleName())
+            .include(ParserBenchmark.class.getSimpleName())
+            .include(ReadFullyBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(new File(output, "micro.json").getPath())
+            .build()).run();
+
+        for (final String threads : threadCounts) {
+            new Runner(new OptionsBuilder()
+                .include(EndToEndBenchmark.class.getSimpleName())
+                .threads(Integer.parseInt(threads.trim()))
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(output, "end-to-end-" + threads.trim() + "-threads.json").getPath())
+                .build()).run();
+        }
+    }
+
+}
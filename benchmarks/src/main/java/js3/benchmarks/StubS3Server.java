@@ -0,0 +1,767 @@
+package js3.benchmarks;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import js3.S3PayloadMode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static js3.util.Coding.encodeHex;
+import static js3.util.Coding.encodeXml;
+import static js3.util.Crypto.md5;
+
+/**
+ * An in-memory S3 endpoint on the JDK http server, for driving the client without a real S3 or
+ * MinIO. It speaks enough of the API for everything S3Client does: buckets, list with prefixes,
+ * delimiters and pagination, get with ranges and conditions, head, put including aws-chunked
+ * uploads, copy, delete, bulk delete and multipart uploads. Signatures are not checked, flexible
+ * checksums in headers and trailers are, and are returned by GETs that ask for them.
+ * <p>
+ * Latency and throttling can be injected. With a concurrency limit, requests beyond the limit are
+ * answered with 503 SlowDown, as S3 does when a prefix gets too hot. An error rate answers a
+ * random fraction of the requests with 503 as well. Object data lives on the heap, unless a data
+ * directory is configured to hold larger working sets.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar js3.benchmarks.StubS3Server [--port=9000] [--latency-ms=0]
+ * [--jitter-ms=0] [--max-concurrency=0] [--error-rate=0] [--data-dir=path] [--buckets=a,b]
+ */
+public final class StubS3Server implements Closeable {
+
+    private static final int MAX_KEYS = 1000;
+    private static final Pattern DELETE_KEY = Pattern.compile("<Key>(.*?)</Key>", Pattern.DOTALL);
+    private static final Pattern COMPLETE_PART = Pattern.compile("<PartNumber>\\s*(\\d+)\\s*</PartNumber>");
+
+    static {
+        // Without this every response waits out the delayed ack of the client, about 40ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final int maxConcurrency;
+    private final double errorRate;
+    private final Path dataDirectory;
+
+    private final Map<String, NavigableMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong uploadIds = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    public StubS3Server() throws IOException {
+        this(new Builder());
+    }
+
+    private StubS3Server(final Builder builder) throws IOException {
+        this.latencyMillis = builder.latency.toMillis();
+        this.jitterMillis = builder.jitter.toMillis();
+        this.maxConcurrency = builder.maxConcurrency;
+        this.errorRate = builder.errorRate;
+        this.dataDirectory = builder.dataDirectory;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 1024);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public URI getEndpoint() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    public void createBucket(final String bucket) {
+        buckets.putIfAbsent(bucket, new ConcurrentSkipListMap<>());
+    }
+
+    public void putObject(final String bucket, final String key, final byte[] data) {
+        createBucket(bucket);
+        store(buckets.get(bucket), key, newObject(data, "application/octet-stream", 0));
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static void main(final String... args) throws IOException {
+        final Map<String, String> options = parseOptions(args);
+        final StubS3Server server = new Builder()
+            .withPort(Integer.parseInt(options.getOrDefault("port", "9000")))
+            .withLatency(Duration.ofMillis(Long.parseLong(options.getOrDefault("latency-ms", "0"))),
+                Duration.ofMillis(Long.parseLong(options.getOrDefault("jitter-ms", "0"))))
+            .withMaxConcurrency(Integer.parseInt(options.getOrDefault("max-concurrency", "0")))
+            .withErrorRate(Double.parseDouble(options.getOrDefault("error-rate", "0")))
+            .withDataDirectory(options.containsKey("data-dir") ? Path.of(options.get("data-dir")) : null)
+            .build();
+        for (final String bucket : options.getOrDefault("buckets", "").split(",")) {
+            if (!bucket.isBlank()) server.createBucket(bucket.trim());
+        }
+        System.out.println("Stub S3 server listening on " + server.getEndpoint());
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            final int concurrent = inFlight.incrementAndGet();
+            try {
+                injectLatency();
+                if ((maxConcurrency > 0 && concurrent > maxConcurrency)
+                        || (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate)) {
+                    throttled.incrementAndGet();
+                    exchange.getRequestBody().readAllBytes();
+                    sendError(exchange, 503, "SlowDown", "Please reduce your request rate.");
+                    return;
+                }
+                route(exchange);
+            } catch (RuntimeException e) {
+                sendError(exchange, 500, "InternalError", String.valueOf(e));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private void route(final HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath();
+        final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        final String method = exchange.getRequestMethod();
+        if (path.equals("/") || path.isEmpty()) {
+            if (method.equals("GET")) listBuckets(exchange);
+            else sendError(exchange, 405, "MethodNotAllowed", method);
+            return;
+        }
+
+        final int slash = path.indexOf('/', 1);
+        final String bucket = slash == -1 ? path.substring(1) : path.substring(1, slash);
+        final String key = slash == -1 || slash == path.length() - 1 ? null : path.substring(slash + 1);
+        if (key == null) {
+            switch (method) {
+                case "PUT" -> createBucket(exchange, bucket);
+                case "DELETE" -> deleteBucket(exchange, bucket);
+                case "HEAD" -> send(exchange, buckets.containsKey(bucket) ? 200 : 404, "");
+                case "GET" -> listObjects(exchange, bucket, query);
+                case "POST" -> {
+                    if (query.containsKey("delete")) deleteObjects(exchange, bucket);
+                    else sendError(exchange, 405, "MethodNotAllowed", method);
+                }
+                default -> sendError(exchange, 405, "MethodNotAllowed", method);
+            }
+            return;
+        }
+
+        final NavigableMap<String, StoredObject> objects = buckets.get(bucket);
+        if (objects == null) {
+            exchange.getRequestBody().readAllBytes();
+            sendError(exchange, 404, "NoSuchBucket", bucket);
+            return;
+        }
+        final String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+        switch (method) {
+            case "PUT" -> {
+                if (query.containsKey("uploadId")) uploadPart(exchange, query, copySource);
+                else if (copySource != null) copyObject(exchange, objects, key, copySource);
+                else putObject(exchange, objects, key);
+            }
+            case "GET", "HEAD" -> getObject(exchange, objects, key, method.equals("HEAD"));
+            case "DELETE" -> {
+                if (query.containsKey("uploadId")) send(exchange, uploads.remove(query.get("uploadId")) == null ? 404 : 204, "");
+                else {
+                    discard(objects.remove(key));
+                    send(exchange, 204, "");
+                }
+            }
+            case "POST" -> {
+                if (query.containsKey("uploads")) createUpload(exchange, bucket, key);
+                else if (query.containsKey("uploadId")) completeUpload(exchange, objects, key, query.get("uploadId"));
+                else sendError(exchange, 405, "MethodNotAllowed", method);
+            }
+            default -> sendError(exchange, 405, "MethodNotAllowed", method);
+        }
+    }
+
+    private void listBuckets(final HttpExchange exchange) throws IOException {
+        final var xml = new StringBuilder("<ListAllMyBucketsResult><Buckets>");
+        for (final String bucket : new TreeSet<>(buckets.keySet())) {
+            xml.append("<Bucket><Name>").append(encodeXml(bucket)).append("</Name></Bucket>");
+        }
+        send(exchange, 200, xml.append("</Buckets></ListAllMyBucketsResult>").toString());
+    }
+
+    private void createBucket(final HttpExchange exchange, final String bucket) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        if (buckets.putIfAbsent(bucket, new ConcurrentSkipListMap<>()) != null)
+            sendError(exchange, 409, "BucketAlreadyOwnedByYou", bucket);
+        else send(exchange, 200, "");
+    }
+
+    private void deleteBucket(final HttpExchange exchange, final String bucket) throws IOException {
+        final NavigableMap<String, StoredObject> objects = buckets.get(bucket);
+        if (objects == null) sendError(exchange, 404, "NoSuchBucket", bucket);
+        else if (!objects.isEmpty()) sendError(exchange, 409, "BucketNotEmpty", bucket);
+        else {
+            buckets.remove(bucket);
+            send(exchange, 204, "");
+        }
+    }
+
+    private void listObjects(final HttpExchange exchange, final String bucket, final Map<String, String> query) throws IOException {
+        final NavigableMap<String, StoredObject> objects = buckets.get(bucket);
+        if (objects == null) {
+            sendError(exchange, 404, "NoSuchBucket", bucket);
+            return;
+        }
+        final String prefix = query.getOrDefault("prefix", "");
+        final String delimiter = query.get("delimiter");
+        final int maxKeys = Math.min(MAX_KEYS, Integer.parseInt(query.getOrDefault("max-keys", String.valueOf(MAX_KEYS))));
+        final String after = query.getOrDefault("continuation-token", query.getOrDefault("start-after", ""));
+
+        final var xml = new StringBuilder("<ListBucketResult><Name>").append(encodeXml(bucket)).append("</Name>");
+        final var commonPrefixes = new LinkedHashSet<String>();
+        String last = null;
+        int count = 0;
+        boolean truncated = false;
+        final boolean fromPrefix = prefix.compareTo(after) > 0 || after.isEmpty();
+        for (final var entry : objects.tailMap(fromPrefix ? prefix : after, fromPrefix).entrySet()) {
+            final String key = entry.getKey();
+            if (!key.startsWith(prefix)) break;
+            // A token that is a common prefix stands for every key under it
+            if (delimiter != null && after.endsWith(delimiter) && key.startsWith(after)) continue;
+
+            final int split = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+            final String commonPrefix = split == -1 ? null : key.substring(0, split + delimiter.length());
+            if (commonPrefix != null && commonPrefixes.contains(commonPrefix)) continue;
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            if (commonPrefix != null) {
+                commonPrefixes.add(commonPrefix);
+                last = commonPrefix;
+            } else {
+                final StoredObject object = entry.getValue();
+                appendContents(xml, key, object.size, object.etag, object.lastModified);
+                last = key;
+            }
+            count++;
+        }
+        for (final String commonPrefix : commonPrefixes) {
+            xml.append("<CommonPrefixes><Prefix>").append(encodeXml(commonPrefix)).append("</Prefix></CommonPrefixes>");
+        }
+        xml.append("<KeyCount>").append(count).append("</KeyCount><IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) xml.append("<NextContinuationToken>").append(encodeXml(last)).append("</NextContinuationToken>");
+        send(exchange, 200, xml.append("</ListBucketResult>").toString());
+    }
+
+    private void deleteObjects(final HttpExchange exchange, final String bucket) throws IOException {
+        final String body = new String(exchange.getRequestBody().readAllBytes(), UTF_8);
+        final NavigableMap<String, StoredObject> objects = buckets.get(bucket);
+        if (objects == null) {
+            sendError(exchange, 404, "NoSuchBucket", bucket);
+            return;
+        }
+        final var xml = new StringBuilder("<DeleteResult>");
+        final boolean quiet = body.contains("<Quiet>true</Quiet>");
+        final Matcher keys = DELETE_KEY.matcher(body);
+        while (keys.find()) {
+            final String key = decodeXml(keys.group(1));
+            discard(objects.remove(key));
+            if (!quiet) xml.append("<Deleted><Key>").append(encodeXml(key)).append("</Key></Deleted>");
+        }
+        send(exchange, 200, xml.append("</DeleteResult>").toString());
+    }
+
+    private void putObject(final HttpExchange exchange, final NavigableMap<String, StoredObject> objects,
+                           final String key) throws IOException {
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        final var trailers = new HashMap<String, String>();
+        final byte[] body = readBody(exchange, trailers);
+        final FlexibleChecksum checksum = FlexibleChecksum.find(exchange.getRequestHeaders(), trailers);
+        if (checksum != null && !checksum.matches(body)) {
+            sendError(exchange, 400, "BadDigest", checksum.header);
+            return;
+        }
+        final StoredObject object = newObject(body, contentType == null ? "binary/octet-stream" : contentType, 0, checksum);
+        store(objects, key, object);
+        exchange.getResponseHeaders().add("ETag", object.etag);
+        if (checksum != null) exchange.getResponseHeaders().add(checksum.header, checksum.value);
+        send(exchange, 200, "");
+    }
+
+    private void copyObject(final HttpExchange exchange, final NavigableMap<String, StoredObject> objects,
+                            final String key, final String copySource) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        final StoredObject source = findSource(copySource);
+        if (source == null) {
+            sendError(exchange, 404, "NoSuchKey", copySource);
+            return;
+        }
+        final StoredObject copy = newObject(read(source), source.contentType, 0);
+        store(objects, key, copy);
+        send(exchange, 200, "<CopyObjectResult><ETag>" + encodeXml(copy.etag) + "</ETag><LastModified>"
+            + copy.lastModified + "</LastModified></CopyObjectResult>");
+    }
+
+    private void getObject(final HttpExchange exchange, final NavigableMap<String, StoredObject> objects,
+                           final String key, final boolean head) throws IOException {
+        final StoredObject object = objects.get(key);
+        if (object == null) {
+            sendError(exchange, 404, "NoSuchKey", key);
+            return;
+        }
+        final Headers request = exchange.getRequestHeaders();
+        final Headers response = exchange.getResponseHeaders();
+        response.add("ETag", object.etag);
+        response.add("Last-Modified", object.lastModified);
+        response.add("Content-Type", object.contentType);
+        response.add("Accept-Ranges", "bytes");
+
+        final String ifMatch = request.getFirst("If-Match");
+        if (ifMatch != null && !ifMatch.equals(object.etag)) {
+            sendError(exchange, 412, "PreconditionFailed", key);
+            return;
+        }
+        final String ifNoneMatch = request.getFirst("If-None-Match");
+        if (ifNoneMatch != null && ifNoneMatch.equals(object.etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        final byte[] data = head ? null : read(object);
+        int start = 0, end = (int) object.size - 1, status = 200;
+        final String range = request.getFirst("Range");
+        if (range != null && range.startsWith("bytes=") && object.size > 0) {
+            final String[] bounds = range.substring(6).split("-", 2);
+            if (bounds[0].isEmpty()) start = Math.max(0, (int) object.size - Integer.parseInt(bounds[1]));
+            else {
+                start = Integer.parseInt(bounds[0]);
+                if (!bounds[1].isEmpty()) end = Math.min(end, Integer.parseInt(bounds[1]));
+            }
+            if (start > end) {
+                sendError(exchange, 416, "InvalidRange", range);
+                return;
+            }
+            status = 206;
+            response.add("Content-Range", "bytes " + start + "-" + end + "/" + object.size);
+        }
+        if (status == 200 && object.checksum != null && "ENABLED".equals(request.getFirst("x-amz-checksum-mode")))
+            response.add(object.checksum.header, object.checksum.value);
+        final int length = end - start + 1;
+        if (head) {
+            response.add("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+            if (length > 0) exchange.getResponseBody().write(data, start, length);
+        }
+    }
+
+    private void createUpload(final HttpExchange exchange, final String bucket, final String key) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        final String uploadId = "upload-" + uploadIds.incrementAndGet();
+        uploads.put(uploadId, new Upload(contentType == null ? "binary/octet-stream" : contentType,
+            exchange.getRequestHeaders().getFirst("x-amz-checksum-algorithm")));
+        send(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + encodeXml(bucket) + "</Bucket><Key>"
+            + encodeXml(key) + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+    }
+
+    private void uploadPart(final HttpExchange exchange, final Map<String, String> query, final String copySource) throws IOException {
+        final Upload upload = uploads.get(query.get("uploadId"));
+        final var trailers = new HashMap<String, String>();
+        final byte[] body = readBody(exchange, trailers);
+        if (upload == null) {
+            sendError(exchange, 404, "NoSuchUpload", query.get("uploadId"));
+            return;
+        }
+        final int partNumber = Integer.parseInt(query.get("partNumber"));
+        if (copySource == null) {
+            final FlexibleChecksum checksum = FlexibleChecksum.find(exchange.getRequestHeaders(), trailers);
+            if (checksum != null && !checksum.matches(body)) {
+                sendError(exchange, 400, "BadDigest", checksum.header);
+                return;
+            }
+            upload.parts.put(partNumber, body);
+            exchange.getResponseHeaders().add("ETag", toETag(body));
+            if (checksum != null) exchange.getResponseHeaders().add(checksum.header, checksum.value);
+            send(exchange, 200, "");
+            return;
+        }
+
+        final StoredObject source = findSource(copySource);
+        if (source == null) {
+            sendError(exchange, 404, "NoSuchKey", copySource);
+            return;
+        }
+        byte[] part = read(source);
+        final String range = exchange.getRequestHeaders().getFirst("x-amz-copy-source-range");
+        if (range != null) {
+            final String[] bounds = range.substring(6).split("-", 2);
+            final int start = Integer.parseInt(bounds[0]), end = Integer.parseInt(bounds[1]);
+            if (start > end || end >= part.length) {
+                sendError(exchange, 416, "InvalidRange", range);
+                return;
+            }
+            part = Arrays.copyOfRange(part, start, end + 1);
+        }
+        upload.parts.put(partNumber, part);
+        final FlexibleChecksum checksum = FlexibleChecksum.of(upload.checksumAlgorithm, part);
+        send(exchange, 200, "<CopyPartResult><ETag>" + encodeXml(toETag(part)) + "</ETag>" + (checksum == null ? ""
+            : "<Checksum" + upload.checksumAlgorithm + ">" + checksum.value + "</Checksum" + upload.checksumAlgorithm + ">")
+            + "</CopyPartResult>");
+    }
+
+    private void completeUpload(final HttpExchange exchange, final NavigableMap<String, StoredObject> objects,
+                                final String key, final String uploadId) throws IOException {
+        final String body = new String(exchange.getRequestBody().readAllBytes(), UTF_8);
+        final Upload upload = uploads.remove(uploadId);
+        if (upload == null) {
+            sendError(exchange, 404, "NoSuchUpload", uploadId);
+            return;
+        }
+        final var data = new ByteArrayOutputStream();
+        final var partNumbers = COMPLETE_PART.matcher(body);
+        int parts = 0;
+        while (partNumbers.find()) {
+            final byte[] part = upload.parts.get(Integer.parseInt(partNumbers.group(1)));
+            if (part == null) {
+                sendError(exchange, 400, "InvalidPart", partNumbers.group(1));
+                return;
+            }
+            data.write(part);
+            parts++;
+        }
+        final StoredObject object = newObject(data.toByteArray(), upload.contentType, parts);
+        store(objects, key, object);
+        send(exchange, 200, "<CompleteMultipartUploadResult><Key>" + encodeXml(key) + "</Key><ETag>"
+            + encodeXml(object.etag) + "</ETag></CompleteMultipartUploadResult>");
+    }
+
+    private StoredObject findSource(final String copySource) {
+        final String source = URLDecoder.decode(copySource.startsWith("/") ? copySource.substring(1) : copySource, UTF_8);
+        final int slash = source.indexOf('/');
+        if (slash == -1) return null;
+        final NavigableMap<String, StoredObject> objects = buckets.get(source.substring(0, slash));
+        return objects == null ? null : objects.get(source.substring(slash + 1));
+    }
+
+    private StoredObject newObject(final byte[] data, final String contentType, final int parts) {
+        return newObject(data, contentType, parts, null);
+    }
+
+    private StoredObject newObject(final byte[] data, final String contentType, final int parts,
+                                   final FlexibleChecksum checksum) {
+        final String etag = parts == 0 ? toETag(data) : "\"" + encodeHex(md5(data)) + "-" + parts + "\"";
+        if (dataDirectory == null) return new StoredObject(data, null, data.length, contentType, etag, checksum);
+        try {
+            final Path file = Files.createTempFile(dataDirectory, "object-", ".bin");
+            Files.write(file, data);
+            return new StoredObject(null, file, data.length, contentType, etag, checksum);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void store(final NavigableMap<String, StoredObject> objects, final String key, final StoredObject object) {
+        discard(objects.put(key, object));
+    }
+
+    private static byte[] read(final StoredObject object) {
+        if (object.data != null) return object.data;
+        try {
+            return Files.readAllBytes(object.file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void discard(final StoredObject object) {
+        if (object == null || object.file == null) return;
+        try {
+            Files.deleteIfExists(object.file);
+        } catch (IOException ignored) {}
+    }
+
+    private void injectLatency() {
+        if (latencyMillis <= 0 && jitterMillis <= 0) return;
+        final long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A complete listing page with generated keys, as the parser benchmark needs one.
+     */
+    static String toListingXml(final String bucket, final String prefix, final int keys) {
+        final var xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Name>")
+            .append(bucket).append("</Name><Prefix>").append(prefix).append("</Prefix>");
+        for (int i = 0; i < keys; i++) {
+            appendContents(xml, String.format("%sphotos/2023/%02d/IMG_%06d.jpg", prefix, i % 12 + 1, i), 1024L * i,
+                "\"d41d8cd98f00b204e9800998ecf8427e\"", "2023-06-01T12:00:00.000Z");
+        }
+        return xml.append("<KeyCount>").append(keys).append("</KeyCount><MaxKeys>1000</MaxKeys>")
+            .append("<IsTruncated>false</IsTruncated></ListBucketResult>").toString();
+    }
+
+    private static void appendContents(final StringBuilder xml, final String key, final long size,
+                                       final String etag, final String lastModified) {
+        xml.append("<Contents><Key>").append(encodeXml(key)).append("</Key>")
+            .append("<LastModified>").append(lastModified).append("</LastModified>")
+            .append("<ETag>").append(encodeXml(etag)).append("</ETag>")
+            .append("<Size>").append(size).append("</Size>")
+            .append("<StorageClass>STANDARD</StorageClass></Contents>");
+    }
+
+    /**
+     * Reads the request body, undoing the aws-chunked encoding of streamed uploads. Chunks may be
+     * signed or not, trailers after the last chunk end up in the map.
+     */
+    private static byte[] readBody(final HttpExchange exchange, final Map<String, String> trailers) throws IOException {
+        final InputStream in = exchange.getRequestBody();
+        final String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        if (encoding == null || !encoding.contains("aws-chunked")) return in.readAllBytes();
+
+        final var data = new ByteArrayOutputStream();
+        while (true) {
+            final String header = readLine(in);
+            final int semicolon = header.indexOf(';');
+            final int size = Integer.parseInt(semicolon == -1 ? header.trim() : header.substring(0, semicolon), 16);
+            if (size == 0) {
+                for (String line; !(line = readLine(in)).isEmpty(); ) {
+                    final int colon = line.indexOf(':');
+                    if (colon != -1) trailers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+                }
+                // Whatever follows the final chunk must be read, leaving it unread breaks the connection
+                in.readAllBytes();
+                return data.toByteArray();
+            }
+            data.write(in.readNBytes(size));
+            readLine(in);
+        }
+    }
+
+    private static String readLine(final InputStream in) throws IOException {
+        final var line = new StringBuilder();
+        for (int c; (c = in.read()) != -1 && c != '\n'; ) if (c != '\r') line.append((char) c);
+        return line.toString();
+    }
+
+    private static Map<String, String> parseQuery(final String rawQuery) {
+        final var query = new HashMap<String, String>();
+        if (rawQuery == null) return query;
+        for (final String parameter : rawQuery.split("&")) {
+            final int equals = parameter.indexOf('=');
+            if (equals == -1) query.put(parameter, "");
+            else query.put(parameter.substring(0, equals), URLDecoder.decode(parameter.substring(equals + 1), UTF_8));
+        }
+        return query;
+    }
+
+    static Map<String, String> parseOptions(final String... args) {
+        final var options = new HashMap<String, String>();
+        for (final String arg : args) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("Options look like --name=value, got " + arg);
+            final int equals = arg.indexOf('=');
+            if (equals == -1) options.put(arg.substring(2), "true");
+            else options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private static String decodeXml(final String text) {
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+            .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static String toETag(final byte[] data) {
+        return "\"" + encodeHex(md5(data)) + "\"";
+    }
+
+    private static void sendError(final HttpExchange exchange, final int statusCode, final String code,
+                                  final String message) throws IOException {
+        send(exchange, statusCode, "<Error><Code>" + code + "</Code><Message>" + encodeXml(message) + "</Message></Error>");
+    }
+
+    private static void send(final HttpExchange exchange, final int statusCode, final String body) throws IOException {
+        final byte[] data = body.getBytes(UTF_8);
+        exchange.sendResponseHeaders(statusCode, data.length == 0 ? -1 : data.length);
+        if (data.length > 0) exchange.getResponseBody().write(data);
+    }
+
+    private static final class StoredObject {
+        private final byte[] data;
+        private final Path file;
+        private final long size;
+        private final String contentType;
+        private final String etag;
+        private final FlexibleChecksum checksum;
+        private final String lastModified = Instant.now().toString();
+
+        private StoredObject(final byte[] data, final Path file, final long size, final String contentType,
+                             final String etag, final FlexibleChecksum checksum) {
+            this.data = data;
+            this.file = file;
+            this.size = size;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.checksum = checksum;
+        }
+    }
+
+    private static final class Upload {
+        private final String contentType;
+        private final String checksumAlgorithm;
+        private final NavigableMap<Integer, byte[]> parts = new ConcurrentSkipListMap<>();
+
+        private Upload(final String contentType, final String checksumAlgorithm) {
+            this.contentType = contentType;
+            this.checksumAlgorithm = checksumAlgorithm;
+        }
+    }
+
+    private static final class FlexibleChecksum {
+        private final S3PayloadMode mode;
+        private final String header;
+        private final String value;
+
+        private FlexibleChecksum(final S3PayloadMode mode, final String value) {
+            this.mode = mode;
+            this.header = mode.checksumHeader();
+            this.value = value;
+        }
+
+        // The checksum sent in a header or a trailer, or null when there is none
+        private static FlexibleChecksum find(final Headers headers, final Map<String, String> trailers) {
+            for (final S3PayloadMode mode : S3PayloadMode.values()) {
+                if (!mode.hasChecksum()) continue;
+                final String value = trailers.getOrDefault(mode.checksumHeader(), headers.getFirst(mode.checksumHeader()));
+                if (value != null) return new FlexibleChecksum(mode, value);
+            }
+            return null;
+        }
+
+        private static FlexibleChecksum of(final String algorithm, final byte[] data) {
+            for (final S3PayloadMode mode : S3PayloadMode.values()) {
+                if (mode.hasChecksum() && mode.checksumAlgorithm.equalsIgnoreCase(algorithm))
+                    return new FlexibleChecksum(mode, mode.checksum(data, 0, data.length));
+            }
+            return null;
+        }
+
+        private boolean matches(final byte[] data) {
+            return value.equals(mode.checksum(data, 0, data.length));
+        }
+    }
+
+    /**
+     * Helps to build StubS3Server objects.
+     */
+    public static class Builder {
+
+        private int port;
+        private Duration latency = Duration.ZERO;
+        private Duration jitter = Duration.ZERO;
+        private int maxConcurrency;
+        private double errorRate;
+        private Path dataDirectory;
+
+        public Builder(){}
+
+        /**
+         * Sets the port to listen on, the default of 0 picks a free one.
+         * @param port The port.
+         * @return Builder.
+         */
+        public Builder withPort(final int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Delays every request before it is handled.
+         * @param latency The fixed part of the delay.
+         * @param jitter The maximum of the random part added to it.
+         * @return Builder.
+         */
+        public Builder withLatency(final Duration latency, final Duration jitter) {
+            this.latency = latency;
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Answers requests beyond this many in flight with 503 SlowDown, 0 means no limit.
+         * @param maxConcurrency The number of requests handled at the same time.
+         * @return Builder.
+         */
+        public Builder withMaxConcurrency(final int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Answers this fraction of the requests with 503 SlowDown.
+         * @param errorRate Between 0 and 1.
+         * @return Builder.
+         */
+        public Builder withErrorRate(final double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * Keeps object data in files in this directory instead of on the heap.
+         * @param dataDirectory An existing directory, or null for the heap.
+         * @return Builder.
+         */
+        public Builder withDataDirectory(final Path dataDirectory) {
+            this.dataDirectory = dataDirectory;
+            return this;
+        }
+
+        public StubS3Server build() throws IOException {
+            return new StubS3Server(this);
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package js3;
+
+import js3.async.*;
+
+import java.net.URI;
+
+/**
+ * The non-blocking counterpart of S3Client, every call returns a CompletableFuture. With the
+ * default HttpClient transport no thread is held while a request is in flight.
+ */
+public interface S3AsyncClient extends S3AsyncListBuckets, S3AsyncListObjects, S3AsyncGetMetaData, S3AsyncGetObject,
+        S3AsyncPutObject, S3AsyncMakeBucket, S3AsyncRemoveBucket, S3AsyncRemoveObject, S3AsyncCopyObject,
+        S3AsyncExistsBucket {
+
+    public static S3AsyncClient newS3AsyncClient(final String endpoint, final String region, final String accessKey, final String secretKey) {
+        final URI endpointUri = URI.create(endpoint);
+        return new S3AsyncClient() {
+            public URI getS3Endpoint() {
+                return endpointUri;
+            }
+            public String getS3Region() {
+                return region;
+            }
+            public String getS3AccessKey() {
+                return accessKey;
+            }
+            public String getS3SecretKey() {
+                return secretKey;
+            }
+        };
+    }
+
+}
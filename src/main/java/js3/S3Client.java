@@ -5,7 +5,8 @@ import js3.actions.*;
 import java.net.URI;
 
 public interface S3Client extends S3ListBuckets, S3ListObjects, S3GetMetaData, S3GetObject, S3PutObject,
-        S3MakeBucket, S3RemoveBucket, S3RemoveObject, S3CopyObject, S3ExistsBucket {
+        S3MakeBucket, S3RemoveBucket, S3RemoveObject, S3CopyObject, S3ExistsBucket, S3MultipartUpload,
+        S3DownloadObject, S3RemoveObjects, S3SyncDirectory, S3PresignObject, S3SelectObject {
 
     public static S3Client newS3Client(final String endpoint, final String region, final String accessKey, final String secretKey) {
         final URI endpointUri = URI.create(endpoint);
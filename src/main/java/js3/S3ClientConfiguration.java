@@ -1,7 +1,20 @@
 package js3;
 
-import static js3.internal.Constants.DEFAULT_CONNECT_TIMEOUT;
-import static js3.internal.Constants.DEFAULT_READ_TIMEOUT;
+import js3.buffer.S3BufferPool;
+import js3.cache.S3MetaDataCache;
+import js3.cache.S3ObjectCache;
+import js3.cache.S3RequestCoalescer;
+import js3.metrics.S3RequestListener;
+import js3.retry.AdaptiveConcurrencyLimiter;
+import js3.retry.ExponentialBackoffRetryPolicy;
+import js3.retry.S3RetryPolicy;
+import js3.transport.HttpClientTransport;
+import js3.transport.S3Transport;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.ExecutorService;
+
+import static js3.internal.Constants.*;
 import static js3.util.HTTP.encodeURI;
 
 public interface S3ClientConfiguration {
@@ -12,6 +25,105 @@ public interface S3ClientConfiguration {
     default int getS3ReadTimeout() {
         return DEFAULT_READ_TIMEOUT;
     }
+    /**
+     * The http version used by the default transport, HTTP_2 multiplexes all requests over one
+     * connection per endpoint.
+     */
+    default HttpClient.Version getS3HttpVersion() {
+        return DEFAULT_HTTP_VERSION;
+    }
+    /**
+     * The transport used to send requests. By default this is a pooled HttpClient that is shared by
+     * all clients with the same connect timeout and http version. Return
+     * UrlConnectionTransport.INSTANCE to go back to HttpURLConnection.
+     */
+    default S3Transport getS3Transport() {
+        return HttpClientTransport.sharedTransport(getS3ConnectTimeout(), getS3HttpVersion());
+    }
+    default int getS3ChunkSize() {
+        return DEFAULT_CHUNK_SIZE;
+    }
+    /**
+     * How upload bodies are protected, see S3PayloadMode. SIGNED by default.
+     */
+    default S3PayloadMode getS3PayloadMode() {
+        return DEFAULT_PAYLOAD_MODE;
+    }
+    default int getS3PartSize() {
+        return DEFAULT_PART_SIZE;
+    }
+    default long getS3MultipartThreshold() {
+        return DEFAULT_MULTIPART_THRESHOLD;
+    }
+    default int getS3Parallelism() {
+        return DEFAULT_PARALLELISM;
+    }
+    default ExecutorService getS3Executor() {
+        return DEFAULT_EXECUTOR;
+    }
+    /**
+     * Lends the blocks used to read and copy bodies. By default a pool shared by all clients that
+     * holds at most 32 MB of free buffers. Return S3BufferPool.NONE to allocate every time.
+     */
+    default S3BufferPool getS3BufferPool() {
+        return DEFAULT_BUFFER_POOL;
+    }
+    /**
+     * Decides which failed requests are sent again. By default throttled requests are retried, and
+     * so are idempotent requests that failed on a server error or a broken connection.
+     * Return S3RetryPolicy.NEVER to fail on the first error.
+     */
+    default S3RetryPolicy getS3RetryPolicy() {
+        return ExponentialBackoffRetryPolicy.DEFAULT;
+    }
+    /**
+     * Limits the requests in flight and adapts the limit when the server throttles, or null for no
+     * limit. Return the same instance on every call, it only works when shared by all requests.
+     */
+    default AdaptiveConcurrencyLimiter getS3ConcurrencyLimiter() {
+        return null;
+    }
+    /**
+     * The cache used by getS3ObjectData, or null to always download. Return the same instance on
+     * every call.
+     */
+    default S3ObjectCache getS3ObjectCache() {
+        return null;
+    }
+    /**
+     * The cache used for object metadata and bucket existence, or null to always ask the server.
+     * Return the same instance on every call.
+     */
+    default S3MetaDataCache getS3MetaDataCache() {
+        return null;
+    }
+
+    /**
+     * Shares one request between concurrent identical object and metadata reads, or null to send
+     * every read on its own. Return the same instance on every call.
+     */
+    default S3RequestCoalescer getS3RequestCoalescer() {
+        return null;
+    }
+
+    /**
+     * Receives the timings and sizes of every request attempt, or null to measure nothing. See
+     * S3MetricsCollector for a ready made one.
+     */
+    default S3RequestListener getS3RequestListener() {
+        return null;
+    }
+
+    /**
+     * Drops what the caches know about an object after this client wrote or removed it. A null key
+     * stands for the bucket itself.
+     */
+    default void invalidateS3Caches(final String bucket, final String key) {
+        final S3MetaDataCache metaDataCache = getS3MetaDataCache();
+        if (metaDataCache != null) metaDataCache.invalidate(bucket, key);
+        final S3ObjectCache objectCache = getS3ObjectCache();
+        if (objectCache != null && key != null) objectCache.invalidate(bucket, key);
+    }
 
     default String newS3Path(final String bucket, final String key) {
         return key == null ? "/" + bucket : "/" + bucket + "/" + encodeURI(key, false);
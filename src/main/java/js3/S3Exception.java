@@ -0,0 +1,31 @@
+package js3;
+
+import java.io.IOException;
+
+/**
+ * Thrown when S3 answers with an unexpected http status code.
+ */
+public class S3Exception extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public final int statusCode;
+    /**
+     * The S3 error code, like NoSuchKey or SlowDown, or null when the response had no error document.
+     */
+    public final String errorCode;
+    public final String errorMessage;
+
+    public S3Exception(final int statusCode) {
+        this(statusCode, null, null);
+    }
+
+    public S3Exception(final int statusCode, final String errorCode, final String errorMessage) {
+        super(errorCode == null ? "Unexpected http code " + statusCode
+            : "Unexpected http code " + statusCode + ", " + errorCode + ": " + errorMessage);
+        this.statusCode = statusCode;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+}
@@ -0,0 +1,73 @@
+package js3;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * How the body of an upload is protected. SIGNED hashes the body with SHA-256 and makes the hash
+ * part of the signature, which costs a full pass over the data before the first byte is sent.
+ * UNSIGNED skips that pass and relies on TLS to protect the body, use it with https endpoints only.
+ * CRC32C and CRC32 send the body unsigned as well, but with a flexible checksum that S3 verifies:
+ * in a header for byte array bodies and in a trailer after the last chunk for streams, so a stream
+ * is checksummed while it is sent. GETs of whole objects then ask for the stored checksum and
+ * verify it while the body is read. CRC32C is computed with hardware instructions on most CPUs.
+ * With a checksum, requests other than object and part uploads keep the signed hash, their bodies
+ * are small.
+ * https://docs.aws.amazon.com/AmazonS3/latest/userguide/checking-object-integrity.html
+ */
+public enum S3PayloadMode {
+
+    SIGNED(null), UNSIGNED(null), CRC32C("CRC32C"), CRC32("CRC32");
+
+    /**
+     * The name S3 uses for the checksum algorithm, or null when the mode sends no checksum.
+     */
+    public final String checksumAlgorithm;
+
+    S3PayloadMode(final String checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    public boolean hasChecksum() {
+        return checksumAlgorithm != null;
+    }
+
+    /**
+     * The header, and trailer, that carries the checksum, such as x-amz-checksum-crc32c.
+     */
+    public String checksumHeader() {
+        return checksumAlgorithm == null ? null : "x-amz-checksum-" + checksumAlgorithm.toLowerCase();
+    }
+
+    public Checksum newChecksum() {
+        return this == CRC32 ? new CRC32() : new CRC32C();
+    }
+
+    public String checksum(final byte[] data, final int offset, final int length) {
+        final Checksum checksum = newChecksum();
+        checksum.update(data, offset, length);
+        return encodeChecksum(checksum);
+    }
+
+    /**
+     * Checksums the remaining bytes of the buffer without moving its position.
+     */
+    public String checksum(final ByteBuffer data) {
+        final Checksum checksum = newChecksum();
+        checksum.update(data.duplicate());
+        return encodeChecksum(checksum);
+    }
+
+    /**
+     * S3 expects the 32 bit checksum in big endian byte order, base64 encoded.
+     */
+    public static String encodeChecksum(final Checksum checksum) {
+        final long value = checksum.getValue();
+        return Base64.getEncoder().encodeToString(new byte[] {
+            (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value });
+    }
+
+}
@@ -1,11 +1,30 @@
 package js3.actions;
 
-import js3.S3ClientConfiguration;
-import js3.S3Credentials;
+import js3.internal.BoundedExecutor;
+import js3.model.PutObjectOptions;
+import js3.model.S3ObjectMetaData;
+import js3.model.S3Part;
+import js3.transport.S3Response;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
-public interface S3CopyObject extends S3ClientConfiguration, S3Credentials {
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static js3.internal.Constants.MAX_PARTS;
+import static js3.internal.S3ResponseParser.parseCopyResult;
+
+public interface S3CopyObject extends S3MultipartUpload, S3ListObjects {
 
     default void copyS3Object(final String bucket, final String fromKey, final String toKey) throws IOException {
         copyS3Object(bucket, fromKey, bucket, toKey);
@@ -13,10 +32,163 @@ public interface S3CopyObject extends S3ClientConfiguration, S3Credentials {
 
     default void copyS3Object(final String fromBucket, final String fromKey, final String toBucket, final String toKey) throws IOException {
         final String pathFromKey = newS3Path(fromBucket, fromKey);
-        newS3Request()
-            .method("PUT").path(newS3Path(toBucket, toKey))
-            .header("x-amz-copy-source", pathFromKey)
-            .execute(getS3ConnectTimeout(), getS3ReadTimeout());
+        try (final S3Response response = newS3Request()
+                .method("PUT").path(newS3Path(toBucket, toKey))
+                .header("x-amz-copy-source", pathFromKey)
+                .execute(this)) {
+            parseCopyResult(response.body());
+        } finally {
+            invalidateS3Caches(toBucket, toKey);
+        }
+    }
+
+    /**
+     * Copies with a single request when the source is at most getS3MultipartThreshold() bytes, and
+     * in parallel parts when it is larger. The source metadata can come from a HEAD or a listing.
+     */
+    default void copyS3Object(final String fromBucket, final S3ObjectMetaData source,
+                              final String toBucket, final String toKey) throws IOException {
+        if (source.size == null || source.size <= getS3MultipartThreshold())
+            copyS3Object(fromBucket, source.key, toBucket, toKey);
+        else if (source.contentType == null)
+            // Listings do not include the content type
+            copyS3ObjectMultipart(fromBucket, source.key, toBucket, toKey);
+        else
+            copyS3ObjectMultipart(fromBucket, source.key, source.etag, source.size, toBucket, toKey,
+                Math.max(getS3PartSize(), (source.size + MAX_PARTS - 1) / MAX_PARTS),
+                new PutObjectOptions.Builder().withContentType(source.contentType).build());
+    }
+
+    /**
+     * Copies the keys to the same keys in another bucket, with up to getS3Parallelism() requests
+     * in flight. Each key is looked up with a HEAD to pick between a single and a multipart copy.
+     * The first copy that fails stops the batch with an exception.
+     */
+    default void copyS3Objects(final String fromBucket, final Collection<String> keys, final String toBucket) throws IOException {
+        copyS3Objects(fromBucket, keys.stream().map(key -> new S3ObjectMetaData(key, null, null, null, null, null)).iterator(),
+            toBucket, UnaryOperator.identity());
+    }
+
+    /**
+     * Copies every object under the prefix to another bucket, replacing fromPrefix with toPrefix
+     * in the keys. A null fromPrefix copies the whole bucket. The objects come from a parallel
+     * listing and are copied while the listing is still running, with the sizes from the listing
+     * picking the copy mode.
+     * @return the number of objects copied.
+     */
+    default long copyS3Prefix(final String fromBucket, final String fromPrefix,
+                              final String toBucket, final String toPrefix) throws IOException {
+        final String from = fromPrefix == null ? "" : fromPrefix;
+        final String to = toPrefix == null ? "" : toPrefix;
+        try (final Stream<S3ObjectMetaData> objects = walkS3Objects(fromBucket, from, false)) {
+            return copyS3Objects(fromBucket, objects.iterator(), toBucket, key -> to + key.substring(from.length()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Every request of the batch runs on one bounded executor: the single copies, the HEADs that
+     * pick the copy mode and the parts of multipart copies. No task waits for another task, so
+     * the executor never needs more threads than the parallelism. Multipart uploads are created
+     * on the calling thread and completed, or aborted, by whichever of their parts ends last.
+     */
+    private long copyS3Objects(final String fromBucket, final Iterator<S3ObjectMetaData> objects,
+                               final String toBucket, final UnaryOperator<String> toKey) throws IOException {
+        final var copied = new AtomicLong();
+        final var executor = new BoundedExecutor(getS3Executor(), getS3Parallelism());
+        // Sources that need a multipart copy, found by the HEAD tasks and started by this thread
+        final var multipart = new LinkedBlockingQueue<S3ObjectMetaData>();
+        final var lookups = new AtomicInteger();
+        final var uploads = new ArrayList<CompletableFuture<Void>>();
+        try {
+            while (objects.hasNext()) {
+                final S3ObjectMetaData source = objects.next();
+                if (source.size != null && source.size <= getS3MultipartThreshold()) {
+                    executor.submit(() -> {
+                        copyS3Object(fromBucket, source.key, toBucket, toKey.apply(source.key));
+                        return copied.incrementAndGet();
+                    });
+                } else {
+                    // Listings do not include the content type, a multipart copy needs the HEAD anyway
+                    lookups.incrementAndGet();
+                    executor.submit(() -> {
+                        try {
+                            final S3ObjectMetaData head = getS3ObjectMetaData(fromBucket, source.key);
+                            if (head.size != null && head.size > getS3MultipartThreshold()) return multipart.add(head);
+                            copyS3Object(fromBucket, source.key, toBucket, toKey.apply(source.key));
+                            return copied.incrementAndGet();
+                        } finally {
+                            lookups.decrementAndGet();
+                        }
+                    });
+                }
+                for (S3ObjectMetaData head; (head = multipart.poll()) != null; )
+                    uploads.add(startS3ObjectCopyMultipart(executor, fromBucket, head, toBucket, toKey.apply(head.key), copied));
+            }
+            while ((lookups.get() > 0 || !multipart.isEmpty()) && !executor.hasFailed()) {
+                final S3ObjectMetaData head = multipart.poll(100, MILLISECONDS);
+                if (head != null)
+                    uploads.add(startS3ObjectCopyMultipart(executor, fromBucket, head, toBucket, toKey.apply(head.key), copied));
+            }
+            executor.awaitAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.drain();
+            throw new InterruptedIOException("Interrupted while copying objects");
+        } catch (IOException | RuntimeException e) {
+            executor.drain();
+            throw e;
+        }
+        // Every part has ended, so every upload has been completed or aborted
+        for (final var upload : uploads) {
+            try {
+                upload.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw e;
+            }
+        }
+        return copied.get();
+    }
+
+    private CompletableFuture<Void> startS3ObjectCopyMultipart(final BoundedExecutor executor, final String fromBucket,
+                                                               final S3ObjectMetaData source, final String toBucket,
+                                                               final String toKey, final AtomicLong copied) throws IOException {
+        final long size = source.size;
+        final long partSize = Math.max(getS3PartSize(), (size + MAX_PARTS - 1) / MAX_PARTS);
+        final String uploadId = createS3MultipartUpload(toBucket, toKey,
+            new PutObjectOptions.Builder().withContentType(source.contentType).build());
+
+        final var parts = new ArrayList<CompletableFuture<S3Part>>();
+        final var upload = new CompletableFuture<Void>();
+        try {
+            for (long first = 0; first < size; first += partSize) {
+                final int number = parts.size() + 1;
+                final long from = first, to = Math.min(size, first + partSize) - 1;
+                parts.add(executor.submit(() -> uploadS3PartCopy(toBucket, toKey, uploadId,
+                    number, fromBucket, source.key, source.etag, from, to)));
+            }
+        } catch (IOException | RuntimeException e) {
+            parts.add(CompletableFuture.failedFuture(e));
+            throw e;
+        } finally {
+            CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).whenComplete((ignored, e) -> {
+                try {
+                    if (e == null) {
+                        completeS3MultipartUpload(toBucket, toKey, uploadId, parts.stream().map(CompletableFuture::join).toList());
+                        copied.incrementAndGet();
+                        upload.complete(null);
+                    } else {
+                        abortS3MultipartUpload(toBucket, toKey, uploadId);
+                        upload.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+                    }
+                } catch (IOException | RuntimeException failure) {
+                    upload.completeExceptionally(failure);
+                }
+            });
+        }
+        return upload;
     }
 
 }
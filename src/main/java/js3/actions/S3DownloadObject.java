@@ -0,0 +1,158 @@
+package js3.actions;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+import js3.S3Exception;
+import js3.internal.BoundedExecutor;
+import js3.model.S3ObjectMetaData;
+import js3.transport.S3Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static js3.internal.Constants.BLOCK_SIZE;
+import static js3.internal.Constants.CHECKPOINT_MAGIC;
+import static js3.internal.Constants.CHECKPOINT_SUFFIX;
+
+public interface S3DownloadObject extends S3ClientConfiguration, S3Credentials, S3GetMetaData {
+
+    /**
+     * Downloads the object into a file as concurrent ranged GETs of getS3PartSize() bytes, each one
+     * written straight to its offset in the preallocated file. Every range is requested with
+     * If-Match on the ETag, so a change to the object halfway through fails the download instead
+     * of producing a mixed file. Finished ranges are recorded in a checkpoint file next to the
+     * target, and a later call with the same target resumes from there when the object is unchanged.
+     */
+    default S3ObjectMetaData downloadS3Object(final String bucket, final String key, final Path file) throws IOException {
+        final S3ObjectMetaData metaData = getS3ObjectMetaData(bucket, key);
+        if (metaData.size == null) throw new IOException("Response did not contain the size of " + key);
+        final long size = metaData.size;
+        final long rangeSize = getS3PartSize();
+        final int rangeCount = (int) ((size + rangeSize - 1) / rangeSize);
+        final Path checkpoint = file.resolveSibling(file.getFileName() + CHECKPOINT_SUFFIX);
+        final String header = CHECKPOINT_MAGIC + "\n" + metaData.etag + "\n" + size + "\n" + rangeSize + "\n";
+
+        final BitSet finished = readCheckpoint(checkpoint, header);
+        if (finished.isEmpty()) Files.writeString(checkpoint, header, UTF_8);
+
+        try (final RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(size);
+            final FileChannel channel = raf.getChannel();
+
+            final var executor = new BoundedExecutor(getS3Executor(), getS3Parallelism());
+            try {
+                for (int index = 0; index < rangeCount; index++) {
+                    if (finished.get(index)) continue;
+                    final long start = index * rangeSize;
+                    final long end = Math.min(start + rangeSize, size) - 1;
+                    final int range = index;
+                    executor.submit(() -> {
+                        downloadS3Range(bucket, key, metaData.etag, start, end, channel);
+                        channel.force(false);
+                        synchronized (checkpoint) {
+                            Files.writeString(checkpoint, range + "\n", UTF_8, APPEND, CREATE);
+                        }
+                        return null;
+                    });
+                }
+                executor.awaitAll();
+            } catch (IOException | RuntimeException e) {
+                executor.drain();
+                if (isPreconditionFailed(e)) {
+                    Files.deleteIfExists(checkpoint);
+                    throw new IOException("Object " + bucket + "/" + key + " changed during the download", e);
+                }
+                throw e;
+            }
+            channel.force(true);
+        }
+
+        Files.deleteIfExists(checkpoint);
+        return metaData;
+    }
+
+    /**
+     * The request itself is retried by S3Request. A body that fails halfway is not, the response
+     * has been handed over by then, so the range is requested again here under the same policy.
+     */
+    private void downloadS3Range(final String bucket, final String key, final String etag,
+                                 final long start, final long end, final FileChannel channel) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            final IOException failure;
+            try (final S3Response response = newS3Request()
+                    .method("GET").path(newS3Path(bucket, key))
+                    .header("Range", "bytes=" + start + "-" + end)
+                    .header("If-Match", etag)
+                    .execute(this)) {
+                if (response.statusCode() != 206)
+                    throw new IOException("Server ignored the range request, got http code " + response.statusCode());
+                try {
+                    writeS3Range(response.body(), start, end, channel);
+                    return;
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+
+            final long delay = getS3RetryPolicy().nextDelayMillis(attempt, true, failure);
+            if (delay < 0) throw failure;
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry");
+            }
+        }
+    }
+
+    private void writeS3Range(final InputStream in, final long start, final long end, final FileChannel channel) throws IOException {
+        final byte[] buffer = getS3BufferPool().acquire(BLOCK_SIZE);
+        long position = start;
+        try {
+            int read; while (position <= end && (read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position + 1))) != -1) {
+                final ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                while (data.hasRemaining()) position += channel.write(data, position);
+            }
+        } finally {
+            getS3BufferPool().release(buffer);
+        }
+        if (position != end + 1) throw new IOException("Range " + start + "-" + end + " ended early at " + position);
+    }
+
+    private static boolean isPreconditionFailed(final Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof S3Exception && ((S3Exception) cause).statusCode == 412) return true;
+        }
+        return false;
+    }
+
+    private static BitSet readCheckpoint(final Path checkpoint, final String header) throws IOException {
+        final BitSet finished = new BitSet();
+        if (!Files.exists(checkpoint)) return finished;
+
+        final String content = Files.readString(checkpoint, UTF_8);
+        if (!content.startsWith(header)) return finished;
+
+        // Only lines that were completely written count, a torn last line is downloaded again
+        final String ranges = content.substring(header.length(), content.lastIndexOf('\n') + 1);
+        for (final String line : ranges.lines().toList()) {
+            try {
+                finished.set(Integer.parseInt(line));
+            } catch (NumberFormatException e) {
+                // Not a range we wrote, ignore it
+            }
+        }
+        return finished;
+    }
+
+}
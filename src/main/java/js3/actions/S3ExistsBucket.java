@@ -2,22 +2,31 @@ package js3.actions;
 
 import js3.S3ClientConfiguration;
 import js3.S3Credentials;
+import js3.S3Exception;
+import js3.cache.S3MetaDataCache;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
-
-import static js3.util.HTTP.readFully;
 
 public interface S3ExistsBucket extends S3ClientConfiguration, S3Credentials {
 
+    /**
+     * Checks the bucket with a HEAD request, or with getS3MetaDataCache() when one is configured.
+     * Any failure counts as a missing bucket, but only a 404 is remembered as one.
+     */
     default boolean existsS3Bucket(final String bucket) {
+        final S3MetaDataCache cache = getS3MetaDataCache();
+        final Boolean cached = cache == null ? null : cache.getBucketExists(bucket);
+        if (cached != null) return cached;
+
         try {
-            final HttpURLConnection connection = newS3Request()
-                .method("GET").path("/" + bucket)
-                .execute(getS3ConnectTimeout(), getS3ReadTimeout());
-            readFully(connection.getInputStream());
-            connection.disconnect();
+            newS3Request()
+                .method("HEAD").path("/" + bucket)
+                .execute(this).close();
+            if (cache != null) cache.putBucketExists(bucket, true);
             return true;
+        } catch (S3Exception e) {
+            if (cache != null && e.statusCode == 404) cache.putBucketExists(bucket, false);
+            return false;
         } catch (IOException e) {
             return false;
         }
@@ -2,32 +2,55 @@ package js3.actions;
 
 import js3.S3ClientConfiguration;
 import js3.S3Credentials;
+import js3.S3Exception;
+import js3.cache.S3MetaDataCache;
+import js3.cache.S3RequestCoalescer;
 import js3.model.S3ObjectMetaData;
+import js3.transport.S3Response;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
-
-import static js3.util.HTTP.getFirstFrom;
+import java.util.Optional;
 
 public interface S3GetMetaData extends S3ClientConfiguration, S3Credentials {
 
+    /**
+     * Fetches the metadata with a HEAD request, or takes it from getS3MetaDataCache() when one is
+     * configured. A missing object throws an S3Exception with status code 404, also when the
+     * answer comes from the cache.
+     */
     default S3ObjectMetaData getS3ObjectMetaData(final String bucket, final String key) throws IOException {
-        final HttpURLConnection connection = newS3Request()
-            .method("HEAD").path(newS3Path(bucket, key))
-            .execute(getS3ConnectTimeout(), getS3ReadTimeout());
+        final S3MetaDataCache cache = getS3MetaDataCache();
+        if (cache == null) return fetchS3ObjectMetaData(bucket, key);
 
+        final Optional<S3ObjectMetaData> cached = cache.getMetaData(bucket, key);
+        if (cached != null) return cached.orElseThrow(() -> new S3Exception(404));
         try {
-            final var headers = connection.getHeaderFields();
+            final S3ObjectMetaData metaData = fetchS3ObjectMetaData(bucket, key);
+            cache.putMetaData(bucket, key, metaData);
+            return metaData;
+        } catch (S3Exception e) {
+            if (e.statusCode == 404) cache.putMissing(bucket, key);
+            throw e;
+        }
+    }
+
+    private S3ObjectMetaData fetchS3ObjectMetaData(final String bucket, final String key) throws IOException {
+        final S3RequestCoalescer coalescer = getS3RequestCoalescer();
+        if (coalescer == null) return headS3Object(bucket, key);
+        return coalescer.execute("HEAD " + newS3Path(bucket, key), () -> headS3Object(bucket, key));
+    }
 
-            final String etag = getFirstFrom(headers, "ETag");
-            final Long size = Long.valueOf(getFirstFrom(headers, "Content-Length"));
-            final String lastModified = getFirstFrom(headers, "Last-Modified");
-            final String contentType = getFirstFrom(headers, "Content-Type");
-            final String serverSideEncryption = getFirstFrom(headers, "x-amz-server-side-encryption");
+    private S3ObjectMetaData headS3Object(final String bucket, final String key) throws IOException {
+        try (final S3Response response = newS3Request()
+                .method("HEAD").path(newS3Path(bucket, key))
+                .execute(this)) {
+            final String etag = response.header("ETag");
+            final Long size = Long.valueOf(response.header("Content-Length"));
+            final String lastModified = response.header("Last-Modified");
+            final String contentType = response.header("Content-Type");
+            final String serverSideEncryption = response.header("x-amz-server-side-encryption");
 
             return new S3ObjectMetaData(key, etag, size, lastModified, contentType, serverSideEncryption);
-        } finally {
-            connection.disconnect();
         }
     }
 
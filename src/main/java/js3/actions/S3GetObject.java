@@ -2,34 +2,167 @@ package js3.actions;
 
 import js3.S3ClientConfiguration;
 import js3.S3Credentials;
+import js3.buffer.S3BufferPool;
+import js3.cache.S3ObjectCache;
+import js3.cache.S3RequestCoalescer;
+import js3.transport.S3Response;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntFunction;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static js3.internal.Constants.BLOCK_SIZE;
+import static js3.util.HTTP.isNotModified;
+import static js3.util.HTTP.parseContentLength;
 import static js3.util.HTTP.readFully;
 
 public interface S3GetObject extends S3Credentials, S3ClientConfiguration {
 
+    /**
+     * Opens a stream that reads the object straight from the connection. Nothing is buffered
+     * beyond what the socket holds, so the caller must close the stream to release the connection.
+     */
     default InputStream getS3ObjectDataAsInputStream(final String bucket, final String key) throws IOException {
-        return new ByteArrayInputStream(getS3ObjectData(bucket, key));
+        return newS3Request()
+            .method("GET").path(newS3Path(bucket, key))
+            .execute(this).body();
     }
 
     default String getS3ObjectDataAsString(final String bucket, final String key) throws IOException {
         return new String(getS3ObjectData(bucket, key), UTF_8);
     }
 
+    /**
+     * Downloads the object into memory. When getS3ObjectCache() returns a cache, the cached body is
+     * used while it is fresh and revalidated with its ETag once it is not. With request coalescing
+     * the shared body is copied for every caller, getS3ObjectDataAsBuffer avoids that copy.
+     */
     default byte[] getS3ObjectData(final String bucket, final String key) throws IOException {
-        final HttpURLConnection connection = newS3Request()
-            .method("GET").path(newS3Path(bucket, key))
-            .execute(getS3ConnectTimeout(), getS3ReadTimeout());
+        if (getS3RequestCoalescer() == null) return loadS3ObjectData(bucket, key);
+
+        final ByteBuffer shared = getS3ObjectDataAsBuffer(bucket, key);
+        final byte[] data = new byte[shared.remaining()];
+        shared.get(data);
+        return data;
+    }
+
+    /**
+     * Downloads the object into a read-only buffer. With getS3RequestCoalescer() configured,
+     * callers that ask for the same object at the same time share one request and one body.
+     */
+    default ByteBuffer getS3ObjectDataAsBuffer(final String bucket, final String key) throws IOException {
+        final S3RequestCoalescer coalescer = getS3RequestCoalescer();
+        final byte[] data = coalescer == null ? loadS3ObjectData(bucket, key)
+            : coalescer.execute("GET " + newS3Path(bucket, key), () -> loadS3ObjectData(bucket, key));
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    /**
+     * Downloads the object straight into the buffer, from its position on, and moves the position
+     * past the data. Heap buffers are filled without an intermediate copy. An object larger than
+     * the room left in the buffer fails before its body is read. The object cache is not used.
+     * @return the number of bytes read.
+     */
+    default int getS3ObjectData(final String bucket, final String key, final ByteBuffer target) throws IOException {
+        try (final S3Response response = newS3Request()
+                .method("GET").path(newS3Path(bucket, key))
+                .execute(this)) {
+            final long length = parseContentLength(response.header("Content-Length"));
+            if (length > target.remaining())
+                throw new IOException("Object of " + length + " bytes does not fit in " + target.remaining() + " bytes");
+            return readFully(response.body(), target, getS3BufferPool());
+        }
+    }
+
+    /**
+     * Downloads the object into a buffer of exactly its size, asking the allocator for it once the
+     * Content-Length is known, for example ByteBuffer::allocateDirect or a slice of a pool. The
+     * returned buffer is flipped, ready to be read. The object cache is not used.
+     */
+    default ByteBuffer getS3ObjectDataAsBuffer(final String bucket, final String key,
+                                               final IntFunction<ByteBuffer> allocator) throws IOException {
+        try (final S3Response response = newS3Request()
+                .method("GET").path(newS3Path(bucket, key))
+                .execute(this)) {
+            final long length = parseContentLength(response.header("Content-Length"));
+            if (length > Integer.MAX_VALUE) throw new IOException("Object of " + length + " bytes does not fit in a buffer");
+            if (length == -1) {
+                // No length up front, the body has to be collected before the buffer can be sized
+                final byte[] data = readFully(response.body(), -1, getS3BufferPool());
+                return allocator.apply(data.length).put(data).flip();
+            }
+            final ByteBuffer target = allocator.apply((int) length);
+            readFully(response.body(), target, getS3BufferPool());
+            return target.flip();
+        }
+    }
+
+    private byte[] loadS3ObjectData(final String bucket, final String key) throws IOException {
+        final S3ObjectCache cache = getS3ObjectCache();
+        if (cache != null) return getS3ObjectDataCached(cache, bucket, key);
+
+        try (final S3Response response = newS3Request()
+                .method("GET").path(newS3Path(bucket, key))
+                .execute(this)) {
+            return readFully(response.body(), parseContentLength(response.header("Content-Length")), getS3BufferPool());
+        }
+    }
+
+    private byte[] getS3ObjectDataCached(final S3ObjectCache cache, final String bucket, final String key) throws IOException {
+        final byte[] fresh = cache.getFresh(bucket, key);
+        if (fresh != null) return fresh;
+
+        final String etag = cache.getETag(bucket, key);
+        try (final S3Response response = newS3Request()
+                .method("GET").path(newS3Path(bucket, key))
+                .header("If-None-Match", etag)
+                .execute(this)) {
+            if (isNotModified(response.statusCode())) {
+                final byte[] cached = cache.revalidated(bucket, key, etag);
+                if (cached != null) return cached;
+            } else {
+                final byte[] data = readFully(response.body(), parseContentLength(response.header("Content-Length")), getS3BufferPool());
+                cache.put(bucket, key, response.header("ETag"), data);
+                return data;
+            }
+        }
+        // The entry disappeared between the request and the 304, fetch it without a condition
+        cache.invalidate(bucket, key);
+        return getS3ObjectDataCached(cache, bucket, key);
+    }
+
+    /**
+     * Streams the object into a file, replacing the file if it already exists.
+     * @return the number of bytes written.
+     */
+    default long transferS3ObjectTo(final String bucket, final String key, final Path file) throws IOException {
+        try (final InputStream in = getS3ObjectDataAsInputStream(bucket, key)) {
+            return Files.copy(in, file, REPLACE_EXISTING);
+        }
+    }
 
-        try {
-            return readFully(connection.getInputStream());
+    /**
+     * Streams the object into the channel. The channel is not closed.
+     * @return the number of bytes written.
+     */
+    default long transferS3ObjectTo(final String bucket, final String key, final WritableByteChannel out) throws IOException {
+        final S3BufferPool pool = getS3BufferPool();
+        final byte[] block = pool.acquire(BLOCK_SIZE);
+        try (final InputStream in = getS3ObjectDataAsInputStream(bucket, key)) {
+            long total = 0;
+            int read; while ((read = in.read(block)) != -1) {
+                final ByteBuffer buffer = ByteBuffer.wrap(block, 0, read);
+                while (buffer.hasRemaining()) total += out.write(buffer);
+            }
+            return total;
         } finally {
-            connection.disconnect();
+            pool.release(block);
         }
     }
 
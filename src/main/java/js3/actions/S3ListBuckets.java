@@ -2,18 +2,14 @@ package js3.actions;
 
 import js3.S3ClientConfiguration;
 import js3.S3Credentials;
-import js3.internal.S3ResponseParser;
-import org.w3c.dom.Document;
+import js3.transport.S3Response;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.List;
 
-import static js3.internal.S3ResponseParser.getNextContinuationToken;
-import static js3.internal.S3ResponseParser.toXmlDocument;
+import static js3.internal.S3ResponseParser.parseBucketsList;
 import static js3.util.HTTP.encodeURI;
-import static js3.util.HTTP.readFully;
 
 public interface S3ListBuckets extends S3ClientConfiguration, S3Credentials {
 
@@ -21,17 +17,10 @@ public interface S3ListBuckets extends S3ClientConfiguration, S3Credentials {
         final var bucketNames = new ArrayList<String>();
 
         String cursor = null; do {
-            final HttpURLConnection connection = newS3Request()
-                .method("GET").path("/").query(newRequestParams(cursor, "list-type=2"))
-                .execute(getS3ConnectTimeout(), getS3ReadTimeout());
-            try {
-                final Document s3ListingDocument = toXmlDocument(readFully(connection.getInputStream()));
-
-                bucketNames.addAll(S3ResponseParser.toBucketsList(s3ListingDocument));
-
-                cursor = getNextContinuationToken(s3ListingDocument);
-            } finally {
-                connection.disconnect();
+            try (final S3Response response = newS3Request()
+                    .method("GET").path("/").query(newRequestParams(cursor, "list-type=2"))
+                    .execute(this)) {
+                cursor = parseBucketsList(response.body(), bucketNames::add);
             }
         } while (cursor != null);
 
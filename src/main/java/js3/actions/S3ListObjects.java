@@ -2,46 +2,126 @@ package js3.actions;
 
 import js3.S3ClientConfiguration;
 import js3.S3Credentials;
+import js3.internal.ParallelBucketWalker;
+import js3.internal.PrefetchingPageIterator;
 import js3.model.S3ObjectMetaData;
-import org.w3c.dom.Document;
+import js3.model.S3ObjectsPage;
+import js3.transport.S3Response;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import static js3.internal.S3ResponseParser.*;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static js3.internal.S3ResponseParser.parseObjectsList;
 import static js3.util.HTTP.encodeURI;
-import static js3.util.HTTP.readFully;
 
 public interface S3ListObjects extends S3ClientConfiguration, S3Credentials {
 
     default List<S3ObjectMetaData> listS3Objects(final String bucket) throws IOException {
-        return internalListObjects(bucket, "");
+        return internalListObjects(bucket, null);
     }
 
     default List<S3ObjectMetaData> listS3Objects(final String bucket, final String prefix) throws IOException {
-        return internalListObjects(bucket, "&prefix="+encodeURI(prefix, true));
+        return internalListObjects(bucket, prefix);
     }
 
-    private List<S3ObjectMetaData> internalListObjects(final String bucket, final String prefixParam) throws IOException {
+    default Stream<S3ObjectMetaData> streamS3Objects(final String bucket, final String prefix) {
+        return streamS3Objects(bucket, prefix, 0, null);
+    }
+
+    /**
+     * Lists the objects lazily. Pages are only requested as the stream is consumed, with the next
+     * page fetched in the background while the caller works on the current one. Failures surface
+     * as UncheckedIOException. Close the stream when abandoning it early.
+     * @param pageSize the max-keys of every request, or 0 for the server default of 1000.
+     * @param startAfter only list keys after this one, used to resume a listing, or null.
+     */
+    default Stream<S3ObjectMetaData> streamS3Objects(final String bucket, final String prefix,
+                                                     final int pageSize, final String startAfter) {
+        final var pages = new PrefetchingPageIterator(continuationToken ->
+            listS3ObjectsPage(bucket, prefix, null, pageSize, continuationToken == null ? startAfter : null, continuationToken),
+            getS3Executor());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, ORDERED | NONNULL), false)
+            .onClose(pages::close);
+    }
+
+    /**
+     * Lists one level of the key hierarchy. Keys that contain the delimiter after the prefix are
+     * rolled up into the common prefixes of the result instead of being returned one by one.
+     * The result holds every page, its continuation token is always null.
+     */
+    default S3ObjectsPage listS3ObjectsAndPrefixes(final String bucket, final String prefix,
+                                                   final String delimiter) throws IOException {
         final var objects = new ArrayList<S3ObjectMetaData>();
+        final var commonPrefixes = new ArrayList<String>();
 
         String cursor = null; do {
-            final String continuationParam = cursor == null ? "" : "continuation-token="+encodeURI(cursor) + "&";
+            final S3ObjectsPage page = listS3ObjectsPage(bucket, prefix, delimiter, 0, null, cursor);
+            objects.addAll(page.objects);
+            commonPrefixes.addAll(page.commonPrefixes);
+            cursor = page.nextContinuationToken;
+        } while (cursor != null);
 
-            final HttpURLConnection connection = newS3Request()
-                .method("GET").path("/" + bucket).query(continuationParam + "list-type=2" + prefixParam)
-                .execute(getS3ConnectTimeout(), getS3ReadTimeout());
-            try {
-                final Document s3ListingDocument = toXmlDocument(readFully(connection.getInputStream()));
+        return new S3ObjectsPage(objects, commonPrefixes, null);
+    }
 
-                objects.addAll(toObjectsList(s3ListingDocument));
+    default Stream<S3ObjectMetaData> walkS3Objects(final String bucket, final String prefix, final boolean ordered) {
+        return walkS3Objects(bucket, prefix, "/", getS3Parallelism(), ordered);
+    }
 
-                cursor = getNextContinuationToken(s3ListingDocument);
-            } finally {
-                connection.disconnect();
-            }
+    /**
+     * Lists every object under the prefix with several listing requests in flight. The prefix tree
+     * is discovered with the delimiter and the sub-prefixes found are listed concurrently, which is
+     * much faster than a single chain of continuation tokens on large buckets. Failures surface as
+     * UncheckedIOException. Close the stream when abandoning it early, a stream that is dropped
+     * without being closed only stops its listings once it has been garbage collected.
+     * @param parallelism the maximum number of listing requests in flight.
+     * @param ordered return the keys in listing order, at the cost of some head-of-line blocking.
+     */
+    default Stream<S3ObjectMetaData> walkS3Objects(final String bucket, final String prefix, final String delimiter,
+                                                   final int parallelism, final boolean ordered) {
+        final var walker = new ParallelBucketWalker(this, bucket, prefix, delimiter, parallelism, getS3Executor(), ordered);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(walker, ordered ? ORDERED | NONNULL : NONNULL), false)
+            .onClose(walker::close);
+    }
+
+    /**
+     * Fetches a single ListObjectsV2 page. All parameters except the bucket are optional.
+     * @param delimiter groups keys that contain it after the prefix into CommonPrefixes.
+     * @param pageSize the max-keys of the request, or 0 for the server default of 1000.
+     */
+    default S3ObjectsPage listS3ObjectsPage(final String bucket, final String prefix, final String delimiter,
+                                            final int pageSize, final String startAfter,
+                                            final String continuationToken) throws IOException {
+        final var query = new StringBuilder("list-type=2");
+        if (continuationToken != null) query.append("&continuation-token=").append(encodeURI(continuationToken));
+        if (delimiter != null) query.append("&delimiter=").append(encodeURI(delimiter));
+        if (pageSize > 0) query.append("&max-keys=").append(pageSize);
+        if (prefix != null) query.append("&prefix=").append(encodeURI(prefix, true));
+        if (startAfter != null) query.append("&start-after=").append(encodeURI(startAfter));
+
+        try (final S3Response response = newS3Request()
+                .method("GET").path("/" + bucket).query(query.toString())
+                .execute(this)) {
+            final var objects = new ArrayList<S3ObjectMetaData>();
+            final var commonPrefixes = new ArrayList<String>();
+            final String next = parseObjectsList(response.body(), objects::add, commonPrefixes::add);
+            return new S3ObjectsPage(objects, commonPrefixes, next);
+        }
+    }
+
+    private List<S3ObjectMetaData> internalListObjects(final String bucket, final String prefix) throws IOException {
+        final var objects = new ArrayList<S3ObjectMetaData>();
+
+        String cursor = null; do {
+            final S3ObjectsPage page = listS3ObjectsPage(bucket, prefix, null, 0, null, cursor);
+            objects.addAll(page.objects);
+            cursor = page.nextContinuationToken;
         } while (cursor != null);
 
         return objects;
@@ -8,9 +8,13 @@ import java.io.IOException;
 public interface S3MakeBucket extends S3ClientConfiguration, S3Credentials {
 
     default void makeS3Bucket(final String bucket) throws IOException {
-        newS3Request()
-            .method("PUT").path("/" + bucket)
-            .execute(getS3ConnectTimeout(), getS3ReadTimeout());
+        try {
+            newS3Request()
+                .method("PUT").path("/" + bucket)
+                .execute(this).close();
+        } finally {
+            invalidateS3Caches(bucket, null);
+        }
     }
 
 }
@@ -0,0 +1,287 @@
+package js3.actions;
+
+import js3.internal.BoundedExecutor;
+import js3.internal.IOBiFunction;
+import js3.model.PutObjectOptions;
+import js3.model.S3ObjectMetaData;
+import js3.model.S3Part;
+import js3.transport.S3Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static js3.internal.Constants.MAX_PARTS;
+import static js3.internal.Constants.MIN_PART_SIZE;
+import static js3.internal.S3ResponseParser.*;
+import static js3.util.Coding.encodeXml;
+import static js3.util.HTTP.encodeURI;
+
+public interface S3MultipartUpload extends S3GetMetaData {
+
+    default String createS3MultipartUpload(final String bucket, final String key,
+                                           final PutObjectOptions putObjectOptions) throws IOException {
+        try (final S3Response response = newS3Request()
+                .method("POST").path(newS3Path(bucket, key)).query("uploads")
+                .header("Content-Type", putObjectOptions.getContentType())
+                .header("x-amz-server-side-encryption", putObjectOptions.getServerSideEncryption())
+                .header("x-amz-server-side-encryption-aws-kms-key-id", putObjectOptions.getServerSideEncryptionKeyId())
+                .header("x-amz-checksum-algorithm", getS3PayloadMode().checksumAlgorithm)
+                .execute(this)) {
+            final String uploadId = parseUploadId(response.body());
+            if (uploadId == null) throw new IOException("Response did not contain an upload id");
+            return uploadId;
+        }
+    }
+
+    /**
+     * Uploads one part. With a checksum payload mode the part carries a checksum, which S3 hands
+     * back and completeS3MultipartUpload() passes on.
+     */
+    default S3Part uploadS3Part(final String bucket, final String key, final String uploadId,
+                                final int partNumber, final byte[] data) throws IOException {
+        return uploadS3Part(bucket, key, uploadId, partNumber, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Uploads the remaining bytes of the buffer as one part, without copying them to the heap.
+     */
+    default S3Part uploadS3Part(final String bucket, final String key, final String uploadId,
+                                final int partNumber, final ByteBuffer data) throws IOException {
+        try (final S3Response response = newS3Request()
+                .method("PUT").path(newS3Path(bucket, key))
+                .query("partNumber=" + partNumber + "&uploadId=" + encodeURI(uploadId))
+                .header("Content-Length", String.valueOf(data.remaining()))
+                .body(data)
+                .execute(this)) {
+            final String checksumHeader = getS3PayloadMode().checksumHeader();
+            return new S3Part(partNumber, response.header("ETag"), checksumHeader == null ? null : response.header(checksumHeader));
+        }
+    }
+
+    /**
+     * Fills a part with a byte range of an existing object, copied on the server side. With an
+     * ETag for the source, the part fails when the source was replaced in the meantime.
+     * @param first The offset of the first byte to copy.
+     * @param last The offset of the last byte to copy, inclusive.
+     */
+    default S3Part uploadS3PartCopy(final String bucket, final String key, final String uploadId, final int partNumber,
+                                    final String fromBucket, final String fromKey, final String fromETag,
+                                    final long first, final long last) throws IOException {
+        try (final S3Response response = newS3Request()
+                .method("PUT").path(newS3Path(bucket, key))
+                .query("partNumber=" + partNumber + "&uploadId=" + encodeURI(uploadId))
+                .header("x-amz-copy-source", newS3Path(fromBucket, fromKey))
+                .header("x-amz-copy-source-range", "bytes=" + first + "-" + last)
+                .header("x-amz-copy-source-if-match", fromETag)
+                .execute(this)) {
+            final S3Part part = parseCopyResult(response.body(), partNumber);
+            if (part.etag == null) throw new IOException("Response did not contain an ETag");
+            return part;
+        }
+    }
+
+    default void completeS3MultipartUpload(final String bucket, final String key, final String uploadId,
+                                           final List<S3Part> parts) throws IOException {
+        final String checksumAlgorithm = getS3PayloadMode().checksumAlgorithm;
+        final var body = new StringBuilder("<CompleteMultipartUpload>");
+        for (final S3Part part : parts) {
+            body.append("<Part><PartNumber>").append(part.partNumber).append("</PartNumber>")
+                .append("<ETag>").append(encodeXml(part.etag)).append("</ETag>");
+            if (part.checksum != null && checksumAlgorithm != null) body.append("<Checksum").append(checksumAlgorithm)
+                .append(">").append(part.checksum).append("</Checksum").append(checksumAlgorithm).append(">");
+            body.append("</Part>");
+        }
+        body.append("</CompleteMultipartUpload>");
+
+        try (final S3Response response = newS3Request()
+                .method("POST").path(newS3Path(bucket, key)).query("uploadId=" + encodeURI(uploadId))
+                .header("Content-Type", "application/xml")
+                .body(body.toString().getBytes(UTF_8))
+                .execute(this)) {
+            final String error = parseErrorMessage(response.body());
+            if (error != null) throw new IOException("Failed to complete multipart upload, " + error);
+        } finally {
+            invalidateS3Caches(bucket, key);
+        }
+    }
+
+    default void abortS3MultipartUpload(final String bucket, final String key, final String uploadId) throws IOException {
+        newS3Request()
+            .method("DELETE").path(newS3Path(bucket, key)).query("uploadId=" + encodeURI(uploadId))
+            .execute(this).close();
+    }
+
+    default void putS3ObjectMultipart(final String bucket, final String key, final Path file,
+                                      final PutObjectOptions putObjectOptions) throws IOException {
+        final long size = Files.size(file);
+        final long partSize = Math.max(getS3PartSize(), (size + MAX_PARTS - 1) / MAX_PARTS);
+        if (partSize > Integer.MAX_VALUE) throw new IOException("File is too large for a multipart upload");
+        try (final InputStream in = Files.newInputStream(file)) {
+            putS3ObjectMultipart(bucket, key, in, (int) partSize, putObjectOptions);
+        }
+    }
+
+    default void putS3ObjectMultipart(final String bucket, final String key, final InputStream data,
+                                      final PutObjectOptions putObjectOptions) throws IOException {
+        putS3ObjectMultipart(bucket, key, data, getS3PartSize(), putObjectOptions);
+    }
+
+    /**
+     * Uploads the stream as a multipart upload. Parts are read one after the other and uploaded
+     * concurrently, with at most getS3Parallelism() parts in flight, so memory use is bounded by
+     * the part size times the parallelism. A failing part is retried on its own by the retry
+     * policy, and when a part fails for good the upload is aborted. The stream is not closed.
+     */
+    default void putS3ObjectMultipart(final String bucket, final String key, final InputStream data,
+                                      final int partSize, final PutObjectOptions putObjectOptions) throws IOException {
+        if (partSize < MIN_PART_SIZE) throw new IllegalArgumentException("Part size must be at least " + MIN_PART_SIZE + " bytes");
+
+        final String uploadId = createS3MultipartUpload(bucket, key, putObjectOptions);
+        final var executor = new BoundedExecutor(getS3Executor(), getS3Parallelism());
+        try {
+            final var parts = new ArrayList<CompletableFuture<S3Part>>();
+            for (int partNumber = 1; partNumber <= MAX_PARTS; partNumber++) {
+                final byte[] part = data.readNBytes(partSize);
+                if (part.length == 0 && partNumber > 1) break;
+
+                final int number = partNumber;
+                parts.add(executor.submit(() -> uploadS3Part(bucket, key, uploadId, number, part)));
+                if (part.length < partSize) break;
+            }
+            if (parts.size() == MAX_PARTS && data.read() != -1)
+                throw new IOException("Stream does not fit in " + MAX_PARTS + " parts of " + partSize + " bytes");
+            executor.awaitAll();
+
+            completeS3MultipartUpload(bucket, key, uploadId, parts.stream().map(CompletableFuture::join).toList());
+        } catch (IOException | RuntimeException e) {
+            try {
+                executor.drain();
+                abortS3MultipartUpload(bucket, key, uploadId);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Uploads the remaining bytes of the buffer as a multipart upload, with parts that are slices
+     * of the buffer and at most getS3Parallelism() of them in flight. Nothing is copied, which
+     * makes this the cheap way to upload a direct or memory mapped buffer. The position of the
+     * buffer is not moved, and the buffer must not change until the upload has completed.
+     */
+    default void putS3ObjectMultipart(final String bucket, final String key, final ByteBuffer data,
+                                      final PutObjectOptions putObjectOptions) throws IOException {
+        final ByteBuffer source = data.duplicate();
+        final int start = source.position();
+        putS3ObjectMultipart(bucket, key, source.remaining(), putObjectOptions, (offset, length) ->
+            source.duplicate().position(start + offset.intValue()).limit(start + offset.intValue() + length).slice());
+    }
+
+    /**
+     * Uploads length bytes of the file, starting at position, as a multipart upload. Every part
+     * maps its own region of the file when it is sent, so the parts are neither read onto the heap
+     * nor mapped all at once. The channel is not closed.
+     */
+    default void putS3ObjectMultipart(final String bucket, final String key, final FileChannel channel,
+                                      final long position, final long length,
+                                      final PutObjectOptions putObjectOptions) throws IOException {
+        putS3ObjectMultipart(bucket, key, length, putObjectOptions,
+            (offset, partLength) -> channel.map(READ_ONLY, position + offset, partLength));
+    }
+
+    private void putS3ObjectMultipart(final String bucket, final String key, final long length,
+                                      final PutObjectOptions putObjectOptions,
+                                      final IOBiFunction<Long, Integer, ByteBuffer> slicer) throws IOException {
+        final long partSize = Math.max(getS3PartSize(), (length + MAX_PARTS - 1) / MAX_PARTS);
+        if (partSize > Integer.MAX_VALUE) throw new IOException("Data is too large for a multipart upload");
+
+        final String uploadId = createS3MultipartUpload(bucket, key, putObjectOptions);
+        final var executor = new BoundedExecutor(getS3Executor(), getS3Parallelism());
+        try {
+            final var parts = new ArrayList<CompletableFuture<S3Part>>();
+            long offset = 0;
+            do {
+                final int number = parts.size() + 1;
+                final long from = offset;
+                final int size = (int) Math.min(partSize, length - offset);
+                parts.add(executor.submit(() ->
+                    uploadS3Part(bucket, key, uploadId, number, slicer.apply(from, size))));
+                offset += size;
+            } while (offset < length);
+            executor.awaitAll();
+
+            completeS3MultipartUpload(bucket, key, uploadId, parts.stream().map(CompletableFuture::join).toList());
+        } catch (IOException | RuntimeException e) {
+            try {
+                executor.drain();
+                abortS3MultipartUpload(bucket, key, uploadId);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Copies an object on the server side as a multipart upload, taking the size and content
+     * type from a HEAD on the source. See the overload with a part size.
+     */
+    default void copyS3ObjectMultipart(final String fromBucket, final String fromKey,
+                                       final String toBucket, final String toKey) throws IOException {
+        final S3ObjectMetaData source = getS3ObjectMetaData(fromBucket, fromKey);
+        if (source.size == null) throw new IOException("Response did not contain the size of " + fromKey);
+        final long partSize = Math.max(getS3PartSize(), (source.size + MAX_PARTS - 1) / MAX_PARTS);
+        copyS3ObjectMultipart(fromBucket, fromKey, source.etag, source.size, toBucket, toKey, partSize,
+            new PutObjectOptions.Builder().withContentType(source.contentType).build());
+    }
+
+    /**
+     * Copies an object on the server side by splitting it into UploadPartCopy ranges of partSize
+     * bytes, with at most getS3Parallelism() ranges in flight. Unlike a single copy request this
+     * works above 5 GB, and the server copies the ranges concurrently instead of one byte after
+     * the other. Every range requires the source to still have fromETag, so a source replaced
+     * halfway fails the copy instead of mixing two versions. User metadata is not copied.
+     */
+    default void copyS3ObjectMultipart(final String fromBucket, final String fromKey, final String fromETag,
+                                       final long size, final String toBucket, final String toKey,
+                                       final long partSize, final PutObjectOptions putObjectOptions) throws IOException {
+        if (partSize < MIN_PART_SIZE) throw new IllegalArgumentException("Part size must be at least " + MIN_PART_SIZE + " bytes");
+        if (size < 1) throw new IOException("Empty objects can not be copied in parts");
+        if ((size + partSize - 1) / partSize > MAX_PARTS)
+            throw new IOException("Object does not fit in " + MAX_PARTS + " parts of " + partSize + " bytes");
+
+        final String uploadId = createS3MultipartUpload(toBucket, toKey, putObjectOptions);
+        final var executor = new BoundedExecutor(getS3Executor(), getS3Parallelism());
+        try {
+            final var parts = new ArrayList<CompletableFuture<S3Part>>();
+            for (long first = 0; first < size; first += partSize) {
+                final int number = parts.size() + 1;
+                final long from = first, to = Math.min(size, first + partSize) - 1;
+                parts.add(executor.submit(() -> uploadS3PartCopy(toBucket, toKey, uploadId,
+                    number, fromBucket, fromKey, fromETag, from, to)));
+            }
+            executor.awaitAll();
+
+            completeS3MultipartUpload(toBucket, toKey, uploadId, parts.stream().map(CompletableFuture::join).toList());
+        } catch (IOException | RuntimeException e) {
+            try {
+                executor.drain();
+                abortS3MultipartUpload(toBucket, toKey, uploadId);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package js3.actions;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+import js3.model.PutObjectOptions;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Presigned URLs let a browser or another service transfer an object directly, without the data
+ * passing through this JVM and without handing out credentials. Presigning is a local computation,
+ * no request is made, and the URL works until it expires or the credentials are revoked.
+ */
+public interface S3PresignObject extends S3ClientConfiguration, S3Credentials {
+
+    default URI presignS3GetObject(final String bucket, final String key, final Duration expiry) {
+        return newS3Request()
+            .method("GET").path(newS3Path(bucket, key))
+            .presign(expiry);
+    }
+
+    default URI presignS3HeadObject(final String bucket, final String key, final Duration expiry) {
+        return newS3Request()
+            .method("HEAD").path(newS3Path(bucket, key))
+            .presign(expiry);
+    }
+
+    /**
+     * The content type and encryption settings are signed, the upload must send them as headers
+     * with the same values or it is rejected.
+     */
+    default URI presignS3PutObject(final String bucket, final String key, final Duration expiry,
+                                   final PutObjectOptions putObjectOptions) {
+        return newS3Request()
+            .method("PUT").path(newS3Path(bucket, key))
+            .header("Content-Type", putObjectOptions.getContentType())
+            .header("x-amz-server-side-encryption", putObjectOptions.getServerSideEncryption())
+            .header("x-amz-server-side-encryption-aws-kms-key-id", putObjectOptions.getServerSideEncryptionKeyId())
+            .presign(expiry);
+    }
+
+    default URI presignS3PutObject(final String bucket, final String key, final Duration expiry) {
+        return newS3Request()
+            .method("PUT").path(newS3Path(bucket, key))
+            .presign(expiry);
+    }
+
+}
@@ -2,11 +2,21 @@ package js3.actions;
 
 import js3.S3ClientConfiguration;
 import js3.S3Credentials;
+import js3.internal.S3Request;
 import js3.model.PutObjectOptions;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
-public interface S3PutObject extends S3ClientConfiguration, S3Credentials {
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+public interface S3PutObject extends S3ClientConfiguration, S3Credentials, S3MultipartUpload {
 
     default void putS3Object(final String bucket, final String key, final byte[] data, final String contentType)
             throws IOException {
@@ -15,14 +25,95 @@ public interface S3PutObject extends S3ClientConfiguration, S3Credentials {
 
     default void putS3Object(final String bucket, final String key, final byte[] data,
                            final PutObjectOptions putObjectOptions) throws IOException {
-        newS3Request()
+        try {
+            newPutRequest(bucket, key, putObjectOptions)
+                .header("Content-Length", String.valueOf(data.length))
+                .body(data)
+                .execute(this).close();
+        } finally {
+            invalidateS3Caches(bucket, key);
+        }
+    }
+
+    /**
+     * Uploads the remaining bytes of the buffer without copying them onto the heap, so direct and
+     * memory mapped buffers are hashed and sent from where they are. Above
+     * getS3MultipartThreshold() the buffer is sent in parallel parts that are slices of it. The
+     * position of the buffer is not moved, and the buffer must not change during the upload.
+     */
+    default void putS3Object(final String bucket, final String key, final ByteBuffer data,
+                             final PutObjectOptions putObjectOptions) throws IOException {
+        if (data.remaining() > getS3MultipartThreshold()) {
+            putS3ObjectMultipart(bucket, key, data, putObjectOptions);
+            return;
+        }
+        try {
+            newPutRequest(bucket, key, putObjectOptions)
+                .header("Content-Length", String.valueOf(data.remaining()))
+                .body(data)
+                .execute(this).close();
+        } finally {
+            invalidateS3Caches(bucket, key);
+        }
+    }
+
+    /**
+     * Uploads length bytes of the file, starting at position, by mapping that region into memory
+     * instead of reading it. Above getS3MultipartThreshold() every part maps its own region. The
+     * channel is not closed.
+     */
+    default void putS3Object(final String bucket, final String key, final FileChannel channel,
+                             final long position, final long length,
+                             final PutObjectOptions putObjectOptions) throws IOException {
+        if (length > getS3MultipartThreshold()) {
+            putS3ObjectMultipart(bucket, key, channel, position, length, putObjectOptions);
+            return;
+        }
+        putS3Object(bucket, key, channel.map(READ_ONLY, position, length), putObjectOptions);
+    }
+
+    /**
+     * Uploads the file, switching to a parallel multipart upload when it is larger than
+     * getS3MultipartThreshold().
+     */
+    default void putS3Object(final String bucket, final String key, final Path file,
+                           final PutObjectOptions putObjectOptions) throws IOException {
+        if (Files.size(file) > getS3MultipartThreshold()) {
+            putS3ObjectMultipart(bucket, key, file, putObjectOptions);
+            return;
+        }
+        try (final InputStream in = Files.newInputStream(file)) {
+            putS3Object(bucket, key, in, Files.size(file), putObjectOptions);
+        }
+    }
+
+    default void putS3Object(final String bucket, final String key, final ReadableByteChannel data, final long length,
+                           final PutObjectOptions putObjectOptions) throws IOException {
+        putS3Object(bucket, key, Channels.newInputStream(data), length, putObjectOptions);
+    }
+
+    /**
+     * Uploads exactly length bytes from the stream. The data is signed, or checksummed, chunk by
+     * chunk as it is sent, so memory use is bounded by the chunk size and not by the size of the
+     * object. The stream is not closed.
+     */
+    default void putS3Object(final String bucket, final String key, final InputStream data, final long length,
+                           final PutObjectOptions putObjectOptions) throws IOException {
+        try {
+            newPutRequest(bucket, key, putObjectOptions)
+                .body(data, length)
+                .execute(this).close();
+        } finally {
+            invalidateS3Caches(bucket, key);
+        }
+    }
+
+    private S3Request newPutRequest(final String bucket, final String key, final PutObjectOptions putObjectOptions) {
+        return newS3Request()
             .method("PUT").path(newS3Path(bucket, key))
             .header("Content-Type", putObjectOptions.getContentType())
-            .header("Content-Length", String.valueOf(data.length))
             .header("x-amz-server-side-encryption", putObjectOptions.getServerSideEncryption())
-            .header("x-amz-server-side-encryption-aws-kms-key-id", putObjectOptions.getServerSideEncryptionKeyId())
-            .body(data)
-            .execute(getS3ConnectTimeout(), getS3ReadTimeout()).disconnect();
+            .header("x-amz-server-side-encryption-aws-kms-key-id", putObjectOptions.getServerSideEncryptionKeyId());
     }
 
 }
@@ -8,9 +8,13 @@ import java.io.IOException;
 public interface S3RemoveBucket extends S3ClientConfiguration, S3Credentials {
 
     default void removeS3Bucket(final String bucket) throws IOException {
-        newS3Request()
-            .method("DELETE").path("/" + bucket)
-            .execute(getS3ConnectTimeout(), getS3ReadTimeout());
+        try {
+            newS3Request()
+                .method("DELETE").path("/" + bucket)
+                .execute(this).close();
+        } finally {
+            invalidateS3Caches(bucket, null);
+        }
     }
 
 }
@@ -0,0 +1,93 @@
+package js3.actions;
+
+import js3.internal.BoundedExecutor;
+import js3.model.S3DeleteError;
+import js3.model.S3ObjectMetaData;
+import js3.transport.S3Response;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static js3.internal.Constants.MAX_DELETE_KEYS;
+import static js3.internal.S3ResponseParser.parseDeleteErrors;
+import static js3.util.Coding.encodeXml;
+import static js3.util.Crypto.md5;
+
+public interface S3RemoveObjects extends S3ListObjects {
+
+    /**
+     * Deletes up to 1000 keys with a single DeleteObjects request. Keys that do not exist count
+     * as deleted.
+     * @return the keys the server refused to delete, empty when all of them are gone.
+     */
+    default List<S3DeleteError> removeS3ObjectsBatch(final String bucket, final List<String> keys) throws IOException {
+        if (keys.size() > MAX_DELETE_KEYS) throw new IllegalArgumentException("At most " + MAX_DELETE_KEYS + " keys can be deleted in one request");
+        if (keys.isEmpty()) return List.of();
+
+        final var xml = new StringBuilder(keys.size() * 64).append("<Delete><Quiet>true</Quiet>");
+        for (final String key : keys) xml.append("<Object><Key>").append(encodeXml(key)).append("</Key></Object>");
+        final byte[] body = xml.append("</Delete>").toString().getBytes(UTF_8);
+
+        try (final S3Response response = newS3Request()
+                .method("POST").path("/" + bucket).query("delete").idempotent(true)
+                .header("Content-Type", "application/xml")
+                .header("Content-MD5", Base64.getEncoder().encodeToString(md5(body)))
+                .body(body)
+                .execute(this)) {
+            final var errors = new ArrayList<S3DeleteError>();
+            parseDeleteErrors(response.body(), errors::add);
+            return errors;
+        } finally {
+            for (final String key : keys) invalidateS3Caches(bucket, key);
+        }
+    }
+
+    default List<S3DeleteError> removeS3Objects(final String bucket, final Collection<String> keys) throws IOException {
+        return removeS3Objects(bucket, keys.iterator());
+    }
+
+    /**
+     * Deletes the keys in batches of 1000 with up to getS3Parallelism() batches in flight. Keys are
+     * only taken from the iterator when a batch slot is free, so a lazy source like a listing is
+     * never held in memory. A batch that fails as a whole stops the deletion with an exception.
+     * @return the keys the server refused to delete, empty when all of them are gone.
+     */
+    default List<S3DeleteError> removeS3Objects(final String bucket, final Iterator<String> keys) throws IOException {
+        final List<S3DeleteError> errors = Collections.synchronizedList(new ArrayList<>());
+        final var executor = new BoundedExecutor(getS3Executor(), getS3Parallelism());
+        try {
+            while (keys.hasNext()) {
+                final var batch = new ArrayList<String>(MAX_DELETE_KEYS);
+                while (batch.size() < MAX_DELETE_KEYS && keys.hasNext()) batch.add(keys.next());
+                executor.submit(() -> errors.addAll(removeS3ObjectsBatch(bucket, batch)));
+            }
+            executor.awaitAll();
+        } catch (IOException | RuntimeException e) {
+            executor.drain();
+            throw e;
+        }
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * Deletes every object under the prefix. The keys come from a parallel listing and are fed to
+     * the delete batches while the listing is still running. An empty prefix empties the bucket.
+     * @return the keys the server refused to delete, empty when all of them are gone.
+     */
+    default List<S3DeleteError> purgeS3Prefix(final String bucket, final String prefix) throws IOException {
+        try (final Stream<S3ObjectMetaData> objects = walkS3Objects(bucket, prefix, false)) {
+            return removeS3Objects(bucket, objects.map(object -> object.key).iterator());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package js3.actions;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+import js3.internal.DelimitedRecordIterator;
+import js3.internal.SelectRecordsInputStream;
+import js3.model.SelectObjectOptions;
+import js3.transport.S3Response;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static js3.util.Coding.encodeXml;
+
+public interface S3SelectObject extends S3ClientConfiguration, S3Credentials {
+
+    /**
+     * Runs an SQL expression on the server against a CSV, JSON or Parquet object and streams back
+     * only the matching records, in the output format of the options. Records are decoded from
+     * the event stream as they arrive. The caller must close the stream to release the connection.
+     * https://docs.aws.amazon.com/AmazonS3/latest/API/API_SelectObjectContent.html
+     */
+    default InputStream selectS3ObjectContent(final String bucket, final String key, final String expression,
+                                              final SelectObjectOptions options) throws IOException {
+        final S3Response response = newS3Request()
+            .method("POST").path(newS3Path(bucket, key)).query("select&select-type=2").idempotent(true)
+            .header("Content-Type", "application/xml")
+            .body(toSelectRequest(expression, options).getBytes(UTF_8))
+            .execute(this);
+        try {
+            return new SelectRecordsInputStream(response);
+        } catch (IOException | RuntimeException e) {
+            response.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Like selectS3ObjectContent, split into records on the record delimiter of the options. Read
+     * failures surface as UncheckedIOException, closing the stream releases the connection.
+     */
+    default Stream<String> selectS3ObjectRecords(final String bucket, final String key, final String expression,
+                                                 final SelectObjectOptions options) throws IOException {
+        final InputStream records = selectS3ObjectContent(bucket, key, expression, options);
+        final Stream<String> lines = "\n".equals(options.getRecordDelimiter())
+            ? new BufferedReader(new InputStreamReader(records, UTF_8)).lines()
+            : StreamSupport.stream(Spliterators.spliteratorUnknownSize(new DelimitedRecordIterator(
+                new BufferedReader(new InputStreamReader(records, UTF_8)), options.getRecordDelimiter()), ORDERED | NONNULL), false);
+        return lines.onClose(() -> {
+            try {
+                records.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static String toSelectRequest(final String expression, final SelectObjectOptions options) {
+        final var xml = new StringBuilder("<SelectObjectContentRequest xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+            .append("<Expression>").append(encodeXml(expression)).append("</Expression>")
+            .append("<ExpressionType>SQL</ExpressionType><InputSerialization>");
+        switch (options.getInputFormat()) {
+            case SelectObjectOptions.Builder.FORMAT_CSV -> xml
+                .append("<CompressionType>").append(options.getCompressionType()).append("</CompressionType><CSV>")
+                .append("<FileHeaderInfo>").append(options.getFileHeaderInfo()).append("</FileHeaderInfo>")
+                .append("<FieldDelimiter>").append(encodeDelimiter(options.getInputFieldDelimiter())).append("</FieldDelimiter>")
+                .append("</CSV>");
+            case SelectObjectOptions.Builder.FORMAT_JSON -> xml
+                .append("<CompressionType>").append(options.getCompressionType()).append("</CompressionType><JSON>")
+                .append("<Type>").append(options.getJsonType()).append("</Type></JSON>");
+            default -> xml.append("<Parquet/>");
+        }
+        xml.append("</InputSerialization><OutputSerialization>");
+        if (SelectObjectOptions.Builder.FORMAT_CSV.equals(options.getOutputFormat())) xml
+            .append("<CSV><FieldDelimiter>").append(encodeDelimiter(options.getOutputFieldDelimiter())).append("</FieldDelimiter>")
+            .append("<RecordDelimiter>").append(encodeDelimiter(options.getRecordDelimiter())).append("</RecordDelimiter></CSV>");
+        else xml
+            .append("<JSON><RecordDelimiter>").append(encodeDelimiter(options.getRecordDelimiter())).append("</RecordDelimiter></JSON>");
+        return xml.append("</OutputSerialization></SelectObjectContentRequest>").toString();
+    }
+
+    // XML parsers turn literal line breaks into plain newlines, so they go over as references
+    private static String encodeDelimiter(final String delimiter) {
+        return encodeXml(delimiter).replace("\r", "&#13;").replace("\n", "&#10;").replace("\t", "&#9;");
+    }
+
+}
@@ -0,0 +1,154 @@
+package js3.actions;
+
+import js3.internal.BoundedExecutor;
+import js3.internal.SyncPlanner;
+import js3.model.PutObjectOptions;
+import js3.model.S3DeleteError;
+import js3.model.S3ObjectMetaData;
+import js3.model.S3SyncAction;
+import js3.model.S3SyncPlan;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static js3.internal.Constants.CHECKPOINT_SUFFIX;
+import static js3.internal.SyncPlanner.PARTIAL_SUFFIX;
+import static js3.internal.SyncPlanner.toDirectoryPrefix;
+import static js3.model.S3SyncAction.Type.*;
+
+public interface S3SyncDirectory extends S3PutObject, S3GetObject, S3DownloadObject, S3RemoveObjects {
+
+    /**
+     * Compares the files under the directory with the objects under the prefix and lists the
+     * uploads that would make the prefix match the directory. File paths map to keys below the
+     * prefix, which is treated as a folder. With delete, objects that have no file are removed.
+     * Nothing is changed, pass the plan to syncS3() to carry it out.
+     */
+    default S3SyncPlan planS3Upload(final Path directory, final String bucket, final String prefix,
+                                    final boolean delete) throws IOException {
+        final String folder = toDirectoryPrefix(prefix);
+        final CompletableFuture<Map<String, S3ObjectMetaData>> objects = listS3Folder(bucket, folder);
+        final var files = SyncPlanner.listDirectory(directory, folder, CHECKPOINT_SUFFIX, PARTIAL_SUFFIX);
+        return SyncPlanner.planUpload(directory, bucket, folder, files, joinS3Folder(objects), delete,
+            new BoundedExecutor(getS3Executor(), getS3Parallelism()), getS3BufferPool());
+    }
+
+    /**
+     * Compares the objects under the prefix with the files under the directory and lists the
+     * downloads that would make the directory match the prefix. With delete, files that have no
+     * object are removed. Nothing is changed, pass the plan to syncS3() to carry it out.
+     */
+    default S3SyncPlan planS3Download(final String bucket, final String prefix, final Path directory,
+                                      final boolean delete) throws IOException {
+        final String folder = toDirectoryPrefix(prefix);
+        final CompletableFuture<Map<String, S3ObjectMetaData>> objects = listS3Folder(bucket, folder);
+        final var files = SyncPlanner.listDirectory(directory, folder, CHECKPOINT_SUFFIX, PARTIAL_SUFFIX);
+        return SyncPlanner.planDownload(directory, bucket, folder, files, joinS3Folder(objects), delete,
+            new BoundedExecutor(getS3Executor(), getS3Parallelism()), getS3BufferPool());
+    }
+
+    default S3SyncPlan syncS3Upload(final Path directory, final String bucket, final String prefix,
+                                    final boolean delete) throws IOException {
+        final S3SyncPlan plan = planS3Upload(directory, bucket, prefix, delete);
+        syncS3(plan);
+        return plan;
+    }
+
+    default S3SyncPlan syncS3Download(final String bucket, final String prefix, final Path directory,
+                                      final boolean delete) throws IOException {
+        final S3SyncPlan plan = planS3Download(bucket, prefix, directory, delete);
+        syncS3(plan);
+        return plan;
+    }
+
+    /**
+     * Carries out a plan. Transfers run with up to getS3Parallelism() files in flight, large files
+     * go through multipart uploads and ranged downloads. Deletions run after every transfer has
+     * succeeded, remote ones in batches. Downloaded files get the modification time of their
+     * object, which lets the next plan skip them without hashing.
+     */
+    default void syncS3(final S3SyncPlan plan) throws IOException {
+        final var executor = new BoundedExecutor(getS3Executor(), getS3Parallelism());
+        try {
+            for (final S3SyncAction action : plan.actions) {
+                if (action.type == UPLOAD) executor.submit(() -> {
+                    uploadS3SyncFile(plan.bucket, action);
+                    return null;
+                });
+                else if (action.type == DOWNLOAD) executor.submit(() -> {
+                    downloadS3SyncFile(plan.bucket, action);
+                    return null;
+                });
+            }
+            executor.awaitAll();
+        } catch (IOException | RuntimeException e) {
+            executor.drain();
+            throw e;
+        }
+
+        final List<String> remoteDeletes = new ArrayList<>();
+        for (final S3SyncAction action : plan.actions) {
+            if (action.type == DELETE_REMOTE) remoteDeletes.add(action.key);
+            else if (action.type == DELETE_LOCAL) Files.deleteIfExists(action.file);
+        }
+        final List<S3DeleteError> errors = removeS3Objects(plan.bucket, remoteDeletes);
+        if (!errors.isEmpty()) throw new IOException("Failed to delete " + errors.size() + " objects, "
+            + errors.get(0).key + ": " + errors.get(0).code + " " + errors.get(0).message);
+    }
+
+    private void uploadS3SyncFile(final String bucket, final S3SyncAction action) throws IOException {
+        final String contentType = Files.probeContentType(action.file);
+        putS3Object(bucket, action.key, action.file, new PutObjectOptions.Builder()
+            .withContentType(contentType == null ? PutObjectOptions.Builder.DEFAULT_CONTENT_TYPE : contentType).build());
+    }
+
+    private void downloadS3SyncFile(final String bucket, final S3SyncAction action) throws IOException {
+        Files.createDirectories(action.file.getParent());
+        if (action.size > getS3MultipartThreshold()) {
+            downloadS3Object(bucket, action.key, action.file);
+        } else {
+            // Small files are written next to the target first, so a failure never leaves half a file
+            final Path partial = action.file.resolveSibling(action.file.getFileName() + PARTIAL_SUFFIX);
+            try {
+                transferS3ObjectTo(bucket, action.key, partial);
+                Files.move(partial, action.file, REPLACE_EXISTING, ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+        if (action.lastModified != null) Files.setLastModifiedTime(action.file, FileTime.from(action.lastModified));
+    }
+
+    private CompletableFuture<Map<String, S3ObjectMetaData>> listS3Folder(final String bucket, final String folder) {
+        return CompletableFuture.supplyAsync(() -> {
+            final Map<String, S3ObjectMetaData> objects = new HashMap<>();
+            try (final Stream<S3ObjectMetaData> walk = walkS3Objects(bucket, folder, false)) {
+                walk.forEach(object -> objects.put(object.key, object));
+            }
+            return objects;
+        }, getS3Executor());
+    }
+
+    private static Map<String, S3ObjectMetaData> joinS3Folder(final CompletableFuture<Map<String, S3ObjectMetaData>> objects)
+            throws IOException {
+        try {
+            return objects.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException) e.getCause()).getCause();
+            throw e;
+        }
+    }
+
+}
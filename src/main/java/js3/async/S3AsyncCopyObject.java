@@ -0,0 +1,24 @@
+package js3.async;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface S3AsyncCopyObject extends S3ClientConfiguration, S3Credentials {
+
+    default CompletableFuture<Void> copyS3ObjectAsync(final String bucket, final String fromKey, final String toKey) {
+        return copyS3ObjectAsync(bucket, fromKey, bucket, toKey);
+    }
+
+    default CompletableFuture<Void> copyS3ObjectAsync(final String fromBucket, final String fromKey,
+                                                      final String toBucket, final String toKey) {
+        return newS3Request()
+            .method("PUT").path(newS3Path(toBucket, toKey))
+            .header("x-amz-copy-source", newS3Path(fromBucket, fromKey))
+            .executeAsync(this)
+            .whenComplete((response, e) -> invalidateS3Caches(toBucket, toKey))
+            .thenApply(response -> null);
+    }
+
+}
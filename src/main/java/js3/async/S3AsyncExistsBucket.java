@@ -0,0 +1,33 @@
+package js3.async;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+import js3.S3Exception;
+import js3.cache.S3MetaDataCache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public interface S3AsyncExistsBucket extends S3ClientConfiguration, S3Credentials {
+
+    default CompletableFuture<Boolean> existsS3BucketAsync(final String bucket) {
+        final S3MetaDataCache cache = getS3MetaDataCache();
+        final Boolean cached = cache == null ? null : cache.getBucketExists(bucket);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+
+        return newS3Request()
+            .method("HEAD").path("/" + bucket)
+            .executeAsync(this)
+            .thenApply(response -> {
+                if (cache != null) cache.putBucketExists(bucket, true);
+                return true;
+            })
+            .exceptionally(e -> {
+                final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                if (cache != null && cause instanceof S3Exception && ((S3Exception) cause).statusCode == 404)
+                    cache.putBucketExists(bucket, false);
+                return false;
+            });
+    }
+
+}
@@ -0,0 +1,37 @@
+package js3.async;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+import js3.S3Exception;
+import js3.cache.S3MetaDataCache;
+import js3.model.S3ObjectMetaData;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public interface S3AsyncGetMetaData extends S3ClientConfiguration, S3Credentials {
+
+    default CompletableFuture<S3ObjectMetaData> getS3ObjectMetaDataAsync(final String bucket, final String key) {
+        final S3MetaDataCache cache = getS3MetaDataCache();
+        final Optional<S3ObjectMetaData> cached = cache == null ? null : cache.getMetaData(bucket, key);
+        if (cached != null) return cached.map(CompletableFuture::completedFuture)
+            .orElseGet(() -> CompletableFuture.failedFuture(new S3Exception(404)));
+
+        return newS3Request()
+            .method("HEAD").path(newS3Path(bucket, key))
+            .executeAsync(this).thenApply(response -> new S3ObjectMetaData(key,
+                response.header("ETag"),
+                Long.valueOf(response.header("Content-Length")),
+                response.header("Last-Modified"),
+                response.header("Content-Type"),
+                response.header("x-amz-server-side-encryption")))
+            .whenComplete((metaData, e) -> {
+                if (cache == null) return;
+                final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                if (metaData != null) cache.putMetaData(bucket, key, metaData);
+                else if (cause instanceof S3Exception && ((S3Exception) cause).statusCode == 404) cache.putMissing(bucket, key);
+            });
+    }
+
+}
@@ -0,0 +1,23 @@
+package js3.async;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+import js3.transport.BufferedS3Response;
+
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public interface S3AsyncGetObject extends S3ClientConfiguration, S3Credentials {
+
+    default CompletableFuture<String> getS3ObjectDataAsStringAsync(final String bucket, final String key) {
+        return getS3ObjectDataAsync(bucket, key).thenApply(data -> new String(data, UTF_8));
+    }
+
+    default CompletableFuture<byte[]> getS3ObjectDataAsync(final String bucket, final String key) {
+        return newS3Request()
+            .method("GET").path(newS3Path(bucket, key))
+            .executeAsync(this).thenApply(BufferedS3Response::bytes);
+    }
+
+}
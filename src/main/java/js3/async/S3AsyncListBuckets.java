@@ -0,0 +1,39 @@
+package js3.async;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static js3.internal.S3ResponseParser.parseBucketsList;
+import static js3.util.HTTP.encodeURI;
+
+public interface S3AsyncListBuckets extends S3ClientConfiguration, S3Credentials {
+
+    default CompletableFuture<List<String>> listS3BucketsAsync() {
+        return listS3BucketsPages(null, new ArrayList<>());
+    }
+
+    private CompletableFuture<List<String>> listS3BucketsPages(final String cursor, final List<String> bucketNames) {
+        final String params = cursor == null ? "list-type=2" : "continuation-token=" + encodeURI(cursor) + "&list-type=2";
+
+        return newS3Request()
+            .method("GET").path("/").query(params)
+            .executeAsync(this)
+            .thenCompose(response -> {
+                final String next;
+                try {
+                    next = parseBucketsList(response.body(), bucketNames::add);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+                return next == null ? CompletableFuture.completedFuture(bucketNames)
+                    : listS3BucketsPages(next, bucketNames);
+            });
+    }
+
+}
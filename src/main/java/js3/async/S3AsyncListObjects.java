@@ -0,0 +1,45 @@
+package js3.async;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+import js3.model.S3ObjectMetaData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static js3.internal.S3ResponseParser.parseObjectsList;
+import static js3.util.HTTP.encodeURI;
+
+public interface S3AsyncListObjects extends S3ClientConfiguration, S3Credentials {
+
+    default CompletableFuture<List<S3ObjectMetaData>> listS3ObjectsAsync(final String bucket) {
+        return listS3ObjectsPages(bucket, "", null, new ArrayList<>());
+    }
+
+    default CompletableFuture<List<S3ObjectMetaData>> listS3ObjectsAsync(final String bucket, final String prefix) {
+        return listS3ObjectsPages(bucket, "&prefix="+encodeURI(prefix, true), null, new ArrayList<>());
+    }
+
+    private CompletableFuture<List<S3ObjectMetaData>> listS3ObjectsPages(final String bucket, final String prefixParam,
+                                                                        final String cursor, final List<S3ObjectMetaData> objects) {
+        final String continuationParam = cursor == null ? "" : "continuation-token="+encodeURI(cursor) + "&";
+
+        return newS3Request()
+            .method("GET").path("/" + bucket).query(continuationParam + "list-type=2" + prefixParam)
+            .executeAsync(this)
+            .thenCompose(response -> {
+                final String next;
+                try {
+                    next = parseObjectsList(response.body(), objects::add, prefix -> {});
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+                return next == null ? CompletableFuture.completedFuture(objects)
+                    : listS3ObjectsPages(bucket, prefixParam, next, objects);
+            });
+    }
+
+}
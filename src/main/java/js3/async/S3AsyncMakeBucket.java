@@ -0,0 +1,18 @@
+package js3.async;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface S3AsyncMakeBucket extends S3ClientConfiguration, S3Credentials {
+
+    default CompletableFuture<Void> makeS3BucketAsync(final String bucket) {
+        return newS3Request()
+            .method("PUT").path("/" + bucket)
+            .executeAsync(this)
+            .whenComplete((response, e) -> invalidateS3Caches(bucket, null))
+            .thenApply(response -> null);
+    }
+
+}
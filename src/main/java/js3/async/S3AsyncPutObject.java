@@ -0,0 +1,65 @@
+package js3.async;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+import js3.internal.S3Request;
+import js3.model.PutObjectOptions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+public interface S3AsyncPutObject extends S3ClientConfiguration, S3Credentials {
+
+    default CompletableFuture<Void> putS3ObjectAsync(final String bucket, final String key, final byte[] data,
+                                                     final String contentType) {
+        return putS3ObjectAsync(bucket, key, data, new PutObjectOptions.Builder().withContentType(contentType).build());
+    }
+
+    default CompletableFuture<Void> putS3ObjectAsync(final String bucket, final String key, final byte[] data,
+                                                     final PutObjectOptions putObjectOptions) {
+        return newPutRequest(bucket, key, putObjectOptions)
+            .header("Content-Length", String.valueOf(data.length))
+            .body(data)
+            .executeAsync(this)
+            .whenComplete((response, e) -> invalidateS3Caches(bucket, key))
+            .thenApply(response -> null);
+    }
+
+    /**
+     * Streams the file with chunk signing. The file is read by the transport as the upload
+     * progresses and closed when the call completes.
+     */
+    default CompletableFuture<Void> putS3ObjectAsync(final String bucket, final String key, final Path file,
+                                                     final PutObjectOptions putObjectOptions) {
+        final InputStream in;
+        final long size;
+        try {
+            size = Files.size(file);
+            in = Files.newInputStream(file);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return newPutRequest(bucket, key, putObjectOptions)
+            .body(in, size)
+            .executeAsync(this)
+            .whenComplete((response, e) -> {
+                invalidateS3Caches(bucket, key);
+                try {
+                    in.close();
+                } catch (IOException ignored) {}
+            })
+            .thenApply(response -> null);
+    }
+
+    private S3Request newPutRequest(final String bucket, final String key, final PutObjectOptions putObjectOptions) {
+        return newS3Request()
+            .method("PUT").path(newS3Path(bucket, key))
+            .header("Content-Type", putObjectOptions.getContentType())
+            .header("x-amz-server-side-encryption", putObjectOptions.getServerSideEncryption())
+            .header("x-amz-server-side-encryption-aws-kms-key-id", putObjectOptions.getServerSideEncryptionKeyId());
+    }
+
+}
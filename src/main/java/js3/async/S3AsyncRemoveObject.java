@@ -0,0 +1,18 @@
+package js3.async;
+
+import js3.S3ClientConfiguration;
+import js3.S3Credentials;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface S3AsyncRemoveObject extends S3ClientConfiguration, S3Credentials {
+
+    default CompletableFuture<Void> removeS3ObjectAsync(final String bucket, final String key) {
+        return newS3Request()
+            .method("DELETE").path(newS3Path(bucket, key))
+            .executeAsync(this)
+            .whenComplete((response, e) -> invalidateS3Caches(bucket, key))
+            .thenApply(response -> null);
+    }
+
+}
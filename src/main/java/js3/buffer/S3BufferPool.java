@@ -0,0 +1,27 @@
+package js3.buffer;
+
+/**
+ * Lends out byte arrays for reading and copying, so that short-lived blocks are reused instead of
+ * allocated for every request. A buffer must be released at most once, and not touched after.
+ * Buffers that are not released are simply garbage collected.
+ */
+public interface S3BufferPool {
+
+    /**
+     * Allocates on every call and drops every release.
+     */
+    S3BufferPool NONE = new S3BufferPool() {
+        public byte[] acquire(final int minimumSize) {
+            return new byte[minimumSize];
+        }
+        public void release(final byte[] buffer) {}
+    };
+
+    /**
+     * @return an array of at least minimumSize bytes, with undefined content.
+     */
+    byte[] acquire(int minimumSize);
+
+    void release(byte[] buffer);
+
+}
@@ -0,0 +1,88 @@
+package js3.buffer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A buffer pool with power of two size classes, from 4 KB up to a maximum buffer size. Free
+ * buffers are kept in stripes picked by the calling thread, which keeps contention low without
+ * tying buffers to threads that may never come back. The free buffers of all stripes together
+ * never hold more than maxPooledBytes, releases beyond that are left to the garbage collector.
+ * Requests above the maximum buffer size are allocated and never pooled.
+ */
+public final class StripedBufferPool implements S3BufferPool {
+
+    private static final int MIN_SHIFT = 12;
+
+    private final int maxShift;
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final Stripe[] stripes;
+
+    public StripedBufferPool(final int maxBufferSize, final long maxPooledBytes) {
+        this(maxBufferSize, maxPooledBytes, Runtime.getRuntime().availableProcessors());
+    }
+
+    public StripedBufferPool(final int maxBufferSize, final long maxPooledBytes, final int stripes) {
+        if (maxBufferSize < 1 << MIN_SHIFT) throw new IllegalArgumentException("Maximum buffer size must be at least " + (1 << MIN_SHIFT));
+        this.maxShift = 31 - Integer.numberOfLeadingZeros(maxBufferSize);
+        this.maxPooledBytes = maxPooledBytes;
+        // A power of two, so a stripe is picked with a mask
+        this.stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripes) * 2 - 1)];
+        for (int i = 0; i < this.stripes.length; i++) this.stripes[i] = new Stripe(maxShift - MIN_SHIFT + 1);
+    }
+
+    public byte[] acquire(final int minimumSize) {
+        final int shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, minimumSize) - 1));
+        if (shift > maxShift) return new byte[minimumSize];
+
+        final byte[] pooled = stripe().poll(shift - MIN_SHIFT);
+        if (pooled == null) return new byte[1 << shift];
+        pooledBytes.addAndGet(-pooled.length);
+        return pooled;
+    }
+
+    public void release(final byte[] buffer) {
+        if (buffer == null || Integer.bitCount(buffer.length) != 1) return;
+        final int shift = Integer.numberOfTrailingZeros(buffer.length);
+        if (shift < MIN_SHIFT || shift > maxShift) return;
+
+        if (pooledBytes.addAndGet(buffer.length) > maxPooledBytes) {
+            pooledBytes.addAndGet(-buffer.length);
+            return;
+        }
+        stripe().push(shift - MIN_SHIFT, buffer);
+    }
+
+    /**
+     * The number of bytes in free buffers, waiting to be handed out again.
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    private Stripe stripe() {
+        final int hash = System.identityHashCode(Thread.currentThread());
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe {
+        private final ArrayDeque<byte[]>[] free;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Stripe(final int sizeClasses) {
+            free = new ArrayDeque[sizeClasses];
+            for (int i = 0; i < sizeClasses; i++) free[i] = new ArrayDeque<>();
+        }
+
+        // Last in first out, the buffer released last is the one most likely still in a cache
+        private synchronized byte[] poll(final int sizeClass) {
+            return free[sizeClass].pollFirst();
+        }
+
+        private synchronized void push(final int sizeClass, final byte[] buffer) {
+            free[sizeClass].addFirst(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package js3.cache;
+
+import js3.model.S3ObjectMetaData;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static js3.internal.Constants.clock;
+
+/**
+ * Remembers object metadata and bucket existence for a limited time, so that hot lookups are
+ * answered without a round trip. Missing objects and buckets are remembered too, usually for a
+ * shorter time. Entries only expire, the cache cannot see changes made by other clients, but the
+ * client owning the cache invalidates the entries of everything it writes or removes.
+ * <p>
+ * When the cache grows beyond its maximum size the expired entries are dropped first and then
+ * the ones closest to expiring, until a tenth of the room is free again.
+ */
+public final class S3MetaDataCache {
+
+    private final int maxSize;
+    private final long timeToLiveMillis;
+    private final long negativeTimeToLiveMillis;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evicting = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private S3MetaDataCache(final int maxSize, final Duration timeToLive, final Duration negativeTimeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.negativeTimeToLiveMillis = negativeTimeToLive.toMillis();
+    }
+
+    /**
+     * @return null when nothing is known about the object, an empty optional when the object is
+     * known to be missing, or its metadata.
+     */
+    public Optional<S3ObjectMetaData> getMetaData(final String bucket, final String key) {
+        final Entry entry = lookup(toId(bucket, key));
+        return entry == null ? null : Optional.ofNullable(entry.metaData);
+    }
+
+    public void putMetaData(final String bucket, final String key, final S3ObjectMetaData metaData) {
+        store(toId(bucket, key), new Entry(metaData, true, clock.millis() + timeToLiveMillis));
+    }
+
+    public void putMissing(final String bucket, final String key) {
+        if (negativeTimeToLiveMillis <= 0) return;
+        store(toId(bucket, key), new Entry(null, false, clock.millis() + negativeTimeToLiveMillis));
+    }
+
+    /**
+     * @return null when nothing is known about the bucket, otherwise whether it exists.
+     */
+    public Boolean getBucketExists(final String bucket) {
+        final Entry entry = lookup(bucket);
+        return entry == null ? null : entry.exists;
+    }
+
+    public void putBucketExists(final String bucket, final boolean exists) {
+        if (!exists && negativeTimeToLiveMillis <= 0) return;
+        store(bucket, new Entry(null, exists, clock.millis() + (exists ? timeToLiveMillis : negativeTimeToLiveMillis)));
+    }
+
+    /**
+     * Drops the entry of the object. A null key drops the bucket and every object in it.
+     */
+    public void invalidate(final String bucket, final String key) {
+        if (key != null) {
+            entries.remove(toId(bucket, key));
+            return;
+        }
+        entries.remove(bucket);
+        final String prefix = bucket + "/";
+        entries.keySet().removeIf(id -> id.startsWith(prefix));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private Entry lookup(final String id) {
+        final Entry entry = entries.get(id);
+        if (entry == null || entry.expiresAt <= clock.millis()) {
+            if (entry != null) entries.remove(id, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    private void store(final String id, final Entry entry) {
+        entries.put(id, entry);
+        if (entries.size() > maxSize && evicting.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evicting.unlock();
+            }
+        }
+    }
+
+    private void evict() {
+        final long now = clock.millis();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+
+        final int target = maxSize - maxSize / 10;
+        if (entries.size() <= target) return;
+        final var byExpiry = new ArrayList<>(entries.entrySet());
+        byExpiry.sort(Comparator.comparingLong(entry -> entry.getValue().expiresAt));
+        for (int i = 0; i < byExpiry.size() && entries.size() > target; i++) {
+            entries.remove(byExpiry.get(i).getKey(), byExpiry.get(i).getValue());
+        }
+    }
+
+    // Bucket names can not contain a slash, so bucket entries never collide with object entries
+    private static String toId(final String bucket, final String key) {
+        return bucket + "/" + key;
+    }
+
+    private static final class Entry {
+        private final S3ObjectMetaData metaData;
+        private final boolean exists;
+        private final long expiresAt;
+
+        private Entry(final S3ObjectMetaData metaData, final boolean exists, final long expiresAt) {
+            this.metaData = metaData;
+            this.exists = exists;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Helps to build S3MetaDataCache objects.
+     */
+    public static class Builder {
+
+        public static final int DEFAULT_MAX_SIZE = 10_000;
+        public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(1);
+        public static final Duration DEFAULT_NEGATIVE_TIME_TO_LIVE = Duration.ofSeconds(10);
+
+        private int maxSize = DEFAULT_MAX_SIZE;
+        private Duration timeToLive = DEFAULT_TIME_TO_LIVE;
+        private Duration negativeTimeToLive = DEFAULT_NEGATIVE_TIME_TO_LIVE;
+
+        public Builder(){}
+
+        /**
+         * Sets the number of entries kept.
+         * @param maxSize The maximum number of entries.
+         * @return Builder.
+         */
+        public Builder withMaxSize(final int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Sets how long metadata and existing buckets are remembered.
+         * @param timeToLive The time to live.
+         * @return Builder.
+         */
+        public Builder withTimeToLive(final Duration timeToLive) {
+            this.timeToLive = timeToLive;
+            return this;
+        }
+
+        /**
+         * Sets how long missing objects and buckets are remembered. Zero disables negative entries.
+         * @param negativeTimeToLive The time to live.
+         * @return Builder.
+         */
+        public Builder withNegativeTimeToLive(final Duration negativeTimeToLive) {
+            this.negativeTimeToLive = negativeTimeToLive;
+            return this;
+        }
+
+        public S3MetaDataCache build() {
+            return new S3MetaDataCache(maxSize, timeToLive, negativeTimeToLive);
+        }
+    }
+
+}
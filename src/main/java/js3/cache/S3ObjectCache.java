@@ -0,0 +1,312 @@
+package js3.cache;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.READ;
+import static js3.internal.Constants.clock;
+import static js3.util.Coding.encodeHex;
+import static js3.util.Crypto.sha256;
+
+/**
+ * Keeps object bodies on local disk, bounded in size and evicted least recently used first.
+ * Small objects can additionally be kept on the heap. Every entry remembers the ETag it was
+ * stored with, so that an expired entry can be revalidated with a conditional request instead of
+ * being downloaded again. Within the time to live an entry is used without asking the server.
+ * <p>
+ * Every file holds a small header with the bucket, key and ETag followed by the body, so the
+ * index is rebuilt from the directory when a new cache is opened on it. Entries found that way
+ * are always revalidated before first use. One directory must not be shared by two caches.
+ */
+public final class S3ObjectCache {
+
+    private static final int MAGIC = 0x6A733363;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final long maxHeapBytes;
+    private final int maxHeapObjectSize;
+    private final long timeToLiveMillis;
+    private final AtomicLong fileSequence = new AtomicLong(clock.millis());
+
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, byte[]> heap = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private long heapBytes;
+
+    private S3ObjectCache(final Path directory, final long maxDiskBytes, final long maxHeapBytes,
+                          final int maxHeapObjectSize, final Duration timeToLive) throws IOException {
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxHeapBytes = maxHeapBytes;
+        this.maxHeapObjectSize = maxHeapObjectSize;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        Files.createDirectories(directory);
+        loadIndex();
+    }
+
+    /**
+     * Returns the cached body when the entry was validated within the time to live, or null when
+     * the server has to be asked.
+     */
+    public byte[] getFresh(final String bucket, final String key) {
+        final Entry entry = getEntry(bucket, key);
+        if (entry == null || clock.millis() - entry.validatedAt >= timeToLiveMillis) return null;
+        return read(entry);
+    }
+
+    /**
+     * The ETag to revalidate with, or null when nothing is cached for the object.
+     */
+    public String getETag(final String bucket, final String key) {
+        final Entry entry = getEntry(bucket, key);
+        return entry == null ? null : entry.etag;
+    }
+
+    /**
+     * Called when the server answered 304 Not Modified for the ETag. Restarts the time to live and
+     * returns the cached body, or null when the entry was evicted or replaced in the meantime.
+     */
+    public byte[] revalidated(final String bucket, final String key, final String etag) {
+        final Entry entry = getEntry(bucket, key);
+        if (entry == null || !entry.etag.equals(etag)) return null;
+        final byte[] data = read(entry);
+        if (data != null) entry.validatedAt = clock.millis();
+        return data;
+    }
+
+    /**
+     * Stores a freshly downloaded body. Objects without an ETag or larger than the disk budget are
+     * not cached.
+     */
+    public void put(final String bucket, final String key, final String etag, final byte[] data) throws IOException {
+        if (etag == null || data.length > maxDiskBytes) return;
+
+        final String id = toId(bucket, key);
+        final Path file = directory.resolve(id + "." + Long.toHexString(fileSequence.incrementAndGet()));
+        final Path temp = directory.resolve(file.getFileName() + TEMP_SUFFIX);
+        final long dataOffset;
+        try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            writeHeader(out, bucket, key, etag, data.length);
+            dataOffset = out.size();
+            out.write(data);
+        }
+        Files.move(temp, file, ATOMIC_MOVE);
+
+        final Entry entry = new Entry(bucket, key, etag, file, dataOffset, data.length, clock.millis());
+        synchronized (this) {
+            remove(id);
+            index.put(id, entry);
+            diskBytes += entry.size;
+            if (data.length <= maxHeapObjectSize && data.length <= maxHeapBytes) {
+                // The caller keeps its array, the heap tier needs its own
+                heap.put(id, data.clone());
+                heapBytes += data.length;
+            }
+            evict();
+        }
+    }
+
+    public void invalidate(final String bucket, final String key) {
+        synchronized (this) {
+            remove(toId(bucket, key));
+        }
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    public synchronized long getHeapBytes() {
+        return heapBytes;
+    }
+
+    private synchronized Entry getEntry(final String bucket, final String key) {
+        return index.get(toId(bucket, key));
+    }
+
+    private byte[] read(final Entry entry) {
+        final String id = toId(entry.bucket, entry.key);
+        synchronized (this) {
+            if (index.get(id) != entry) return null;
+            final byte[] data = heap.get(id);
+            if (data != null) return data.clone();
+        }
+        // An entry can be evicted while its file is read, that simply counts as a miss
+        try (final FileChannel channel = FileChannel.open(entry.file, READ)) {
+            final ByteBuffer data = ByteBuffer.allocate(Math.toIntExact(entry.size));
+            long position = entry.dataOffset;
+            while (data.hasRemaining()) {
+                final int read = channel.read(data, position);
+                if (read == -1) return null;
+                position += read;
+            }
+            return data.array();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void remove(final String id) {
+        final Entry old = index.remove(id);
+        if (old != null) {
+            diskBytes -= old.size;
+            deleteQuietly(old.file);
+        }
+        final byte[] data = heap.remove(id);
+        if (data != null) heapBytes -= data.length;
+    }
+
+    private void evict() {
+        for (final Iterator<Map.Entry<String, byte[]>> it = heap.entrySet().iterator(); heapBytes > maxHeapBytes && it.hasNext(); ) {
+            heapBytes -= it.next().getValue().length;
+            it.remove();
+        }
+        for (final Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator(); diskBytes > maxDiskBytes && it.hasNext(); ) {
+            final var eldest = it.next();
+            it.remove();
+            diskBytes -= eldest.getValue().size;
+            deleteQuietly(eldest.getValue().file);
+            final byte[] data = heap.remove(eldest.getKey());
+            if (data != null) heapBytes -= data.length;
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            files.sorted((a, b) -> Long.compare(a.toFile().lastModified(), b.toFile().lastModified()))
+                .forEach(this::loadEntry);
+        }
+        evict();
+    }
+
+    private void loadEntry(final Path file) {
+        if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+            deleteQuietly(file);
+            return;
+        }
+        try (final var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) return;
+            final String bucket = in.readUTF(), key = in.readUTF(), etag = in.readUTF();
+            final long size = in.readLong();
+            final long dataOffset = Files.size(file) - size;
+            remove(toId(bucket, key));
+            index.put(toId(bucket, key), new Entry(bucket, key, etag, file, dataOffset, size, 0));
+            diskBytes += size;
+        } catch (IOException e) {
+            deleteQuietly(file);
+        }
+    }
+
+    private static void writeHeader(final DataOutputStream out, final String bucket, final String key,
+                                    final String etag, final long size) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(bucket);
+        out.writeUTF(key);
+        out.writeUTF(etag);
+        out.writeLong(size);
+    }
+
+    private static String toId(final String bucket, final String key) {
+        return encodeHex(sha256((bucket + "/" + key).getBytes(UTF_8)));
+    }
+
+    private static void deleteQuietly(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {}
+    }
+
+    private static final class Entry {
+        private final String bucket;
+        private final String key;
+        private final String etag;
+        private final Path file;
+        private final long dataOffset;
+        private final long size;
+        private volatile long validatedAt;
+
+        private Entry(final String bucket, final String key, final String etag, final Path file,
+                      final long dataOffset, final long size, final long validatedAt) {
+            this.bucket = bucket;
+            this.key = key;
+            this.etag = etag;
+            this.file = file;
+            this.dataOffset = dataOffset;
+            this.size = size;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    /**
+     * Helps to build S3ObjectCache objects.
+     */
+    public static class Builder {
+
+        public static final long DEFAULT_MAX_DISK_BYTES = 1024L * 1024 * 1024;
+        public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ZERO;
+
+        private final Path directory;
+        private long maxDiskBytes = DEFAULT_MAX_DISK_BYTES;
+        private long maxHeapBytes;
+        private int maxHeapObjectSize;
+        private Duration timeToLive = DEFAULT_TIME_TO_LIVE;
+
+        /**
+         * @param directory where the bodies are stored, created when missing.
+         */
+        public Builder(final Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Sets the total size of the bodies kept on disk.
+         * @param maxDiskBytes The maximum in bytes.
+         * @return Builder.
+         */
+        public Builder withMaxDiskBytes(final long maxDiskBytes) {
+            this.maxDiskBytes = maxDiskBytes;
+            return this;
+        }
+
+        /**
+         * Enables the heap tier for small objects. It is off by default.
+         * @param maxHeapBytes The total size of the bodies kept on the heap.
+         * @param maxHeapObjectSize Only bodies up to this size are kept on the heap.
+         * @return Builder.
+         */
+        public Builder withHeapTier(final long maxHeapBytes, final int maxHeapObjectSize) {
+            this.maxHeapBytes = maxHeapBytes;
+            this.maxHeapObjectSize = maxHeapObjectSize;
+            return this;
+        }
+
+        /**
+         * Sets how long an entry is used without revalidating it. The default of zero revalidates
+         * on every read.
+         * @param timeToLive The time to live.
+         * @return Builder.
+         */
+        public Builder withTimeToLive(final Duration timeToLive) {
+            this.timeToLive = timeToLive;
+            return this;
+        }
+
+        public S3ObjectCache build() throws IOException {
+            return new S3ObjectCache(directory, maxDiskBytes, maxHeapBytes, maxHeapObjectSize, timeToLive);
+        }
+    }
+
+}
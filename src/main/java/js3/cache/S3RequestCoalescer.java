@@ -0,0 +1,75 @@
+package js3.cache;
+
+import js3.S3Exception;
+import js3.internal.IOCallable;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets concurrent identical reads share one request. The first caller for a request sends it,
+ * callers arriving while it is in flight wait for the same result instead of sending their own.
+ * Nothing is kept once the request completes, so a later call always goes to the server.
+ * <p>
+ * Waiters get the very same result object, which is why only immutable results are shared.
+ * A failure is rethrown to every waiter as a new exception carrying the same status code.
+ */
+public final class S3RequestCoalescer {
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param id identifies the request, calls with equal ids must return the same type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(final String id, final IOCallable<T> request) throws IOException {
+        final CompletableFuture<Object> own = new CompletableFuture<>();
+        final CompletableFuture<Object> shared = inFlight.putIfAbsent(id, own);
+        if (shared != null) {
+            coalesced.increment();
+            return (T) await(shared);
+        }
+
+        try {
+            final T result = request.call();
+            own.complete(result);
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, own);
+        }
+    }
+
+    /**
+     * The number of calls that were answered by a request sent for another caller.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    private static Object await(final CompletableFuture<Object> shared) throws IOException {
+        try {
+            return shared.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a shared request", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof S3Exception) {
+                final S3Exception failure = (S3Exception) cause;
+                throw new S3Exception(failure.statusCode, failure.errorCode, failure.errorMessage);
+            }
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package js3.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs tasks on an executor with at most a fixed number in flight. Submitting blocks the caller
+ * until a slot frees up, which keeps producers (and the memory they hold) in step with the
+ * workers. The first failure stops further submissions and is rethrown to the caller.
+ */
+public final class BoundedExecutor {
+
+    private final Executor executor;
+    private final int parallelism;
+    private final Semaphore permits;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    public BoundedExecutor(final Executor executor, final int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.permits = new Semaphore(parallelism);
+    }
+
+    public <T> CompletableFuture<T> submit(final IOCallable<T> task) throws IOException {
+        acquire(1);
+        try {
+            throwIfFailed();
+        } catch (IOException e) {
+            permits.release();
+            throw e;
+        }
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    result.completeExceptionally(e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw new IOException("Executor rejected the task", e);
+        }
+        return result;
+    }
+
+    /**
+     * Waits until every submitted task has finished and rethrows the first failure, if any.
+     */
+    public void awaitAll() throws IOException {
+        acquire(parallelism);
+        permits.release(parallelism);
+        throwIfFailed();
+    }
+
+    /**
+     * Waits until every submitted task has finished, ignoring failures. Used on error paths where
+     * the in-flight work must settle before cleaning up.
+     */
+    public void drain() throws InterruptedIOException {
+        acquire(parallelism);
+        permits.release(parallelism);
+    }
+
+    public boolean hasFailed() {
+        return failure.get() != null;
+    }
+
+    private void acquire(final int count) throws InterruptedIOException {
+        try {
+            permits.acquire(count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free slot");
+        }
+    }
+
+    private void throwIfFailed() throws IOException {
+        final Throwable e = failure.get();
+        if (e == null) return;
+        // Rethrown as it is, so callers can still tell an S3Exception by its status code
+        if (e instanceof IOException) throw (IOException) e;
+        if (e instanceof RuntimeException) throw (RuntimeException) e;
+        if (e instanceof Error) throw (Error) e;
+        throw new IOException(e.getMessage(), e);
+    }
+
+}
@@ -0,0 +1,115 @@
+package js3.internal;
+
+import js3.S3PayloadMode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Checksum;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Encodes a stream in the aws-chunked format without chunk signatures, and ends it with a trailer
+ * that holds the checksum of everything that went before. The checksum is updated as the chunks
+ * are read, so the data is passed over once. Only one chunk is held in memory at a time.
+ * https://docs.aws.amazon.com/AmazonS3/latest/API/sigv4-streaming-trailers.html
+ */
+public final class ChecksumTrailerInputStream extends InputStream {
+
+    // A 32 bit checksum is 8 characters of base64
+    private static final int CHECKSUM_LENGTH = 8;
+
+    private final InputStream source;
+    private final S3PayloadMode mode;
+    private final Checksum checksum;
+    private final byte[] chunk;
+
+    private long remaining;
+    private boolean finished;
+
+    private byte[] header = new byte[0];
+    private int headerPos;
+    private int chunkLength;
+    private int chunkPos;
+    private byte[] footer = new byte[0];
+    private int footerPos;
+
+    public ChecksumTrailerInputStream(final InputStream source, final long length, final int chunkSize,
+                                      final S3PayloadMode mode) {
+        this.source = source;
+        this.remaining = length;
+        this.mode = mode;
+        this.checksum = mode.newChecksum();
+        this.chunk = new byte[(int) Math.max(1, Math.min(chunkSize, length))];
+    }
+
+    public static long toEncodedLength(final long length, final int chunkSize, final S3PayloadMode mode) {
+        final long fullChunks = length / chunkSize;
+        final int lastChunk = (int) (length % chunkSize);
+        long encoded = fullChunks * (Integer.toHexString(chunkSize).length() + 4 + chunkSize);
+        if (lastChunk > 0) encoded += Integer.toHexString(lastChunk).length() + 4 + lastChunk;
+        return encoded + "0\r\n".length() + mode.checksumHeader().length() + 1 + CHECKSUM_LENGTH + 2 + 2;
+    }
+
+    public int read() throws IOException {
+        final byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        if (length == 0) return 0;
+        if (headerPos == header.length && chunkPos == chunkLength && footerPos == footer.length && !nextChunk()) return -1;
+
+        int written = 0;
+        while (written < length) {
+            final int count;
+            if (headerPos < header.length) {
+                count = Math.min(length - written, header.length - headerPos);
+                System.arraycopy(header, headerPos, buffer, offset + written, count);
+                headerPos += count;
+            } else if (chunkPos < chunkLength) {
+                count = Math.min(length - written, chunkLength - chunkPos);
+                System.arraycopy(chunk, chunkPos, buffer, offset + written, count);
+                chunkPos += count;
+            } else if (footerPos < footer.length) {
+                count = Math.min(length - written, footer.length - footerPos);
+                System.arraycopy(footer, footerPos, buffer, offset + written, count);
+                footerPos += count;
+            } else break;
+            written += count;
+        }
+        return written;
+    }
+
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private boolean nextChunk() throws IOException {
+        if (finished) return false;
+
+        chunkLength = (int) Math.min(chunk.length, remaining);
+        readChunk(chunkLength);
+        remaining -= chunkLength;
+        finished = chunkLength == 0;
+
+        checksum.update(chunk, 0, chunkLength);
+        header = (Integer.toHexString(chunkLength) + "\r\n").getBytes(US_ASCII);
+        footer = (finished ? mode.checksumHeader() + ":" + S3PayloadMode.encodeChecksum(checksum) + "\r\n\r\n" : "\r\n")
+            .getBytes(US_ASCII);
+        headerPos = 0;
+        chunkPos = 0;
+        footerPos = 0;
+        return true;
+    }
+
+    private void readChunk(final int size) throws IOException {
+        int offset = 0;
+        while (offset < size) {
+            final int read = source.read(chunk, offset, size - offset);
+            if (read == -1) throw new IOException("Stream ended before the declared content length was read");
+            offset += read;
+        }
+    }
+
+}
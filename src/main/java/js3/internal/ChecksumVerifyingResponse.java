@@ -0,0 +1,114 @@
+package js3.internal;
+
+import js3.S3PayloadMode;
+import js3.buffer.S3BufferPool;
+import js3.transport.S3Response;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Checksum;
+
+/**
+ * Checks the body of a response against the checksum S3 sent in the headers, while the caller
+ * reads it. A mismatch fails the read that reaches the end of the body. A body that is closed
+ * before the end is not checked.
+ */
+public final class ChecksumVerifyingResponse implements S3Response {
+
+    private final S3Response response;
+    private final S3PayloadMode mode;
+    private final String expected;
+    private final S3BufferPool pool;
+    private InputStream body;
+
+    private ChecksumVerifyingResponse(final S3Response response, final S3PayloadMode mode, final String expected,
+                                      final S3BufferPool pool) {
+        this.response = response;
+        this.mode = mode;
+        this.expected = expected;
+        this.pool = pool;
+    }
+
+    /**
+     * Wraps the response when it carries a checksum of the whole object. Partial content and the
+     * composite checksums of multipart uploads, which end in a dash and the part count, can not
+     * be checked against the body and pass unchanged.
+     */
+    public static S3Response verifying(final S3Response response, final S3PayloadMode mode, final S3BufferPool pool) {
+        if (response.statusCode() != 200) return response;
+        final String expected = response.header(mode.checksumHeader());
+        if (expected == null || expected.indexOf('-') != -1) return response;
+        return new ChecksumVerifyingResponse(response, mode, expected, pool);
+    }
+
+    public static void verify(final S3PayloadMode mode, final String expected, final byte[] data) throws IOException {
+        if (expected == null || expected.indexOf('-') != -1) return;
+        final String actual = mode.checksum(data, 0, data.length);
+        if (!expected.equals(actual)) throw newMismatch(mode, expected, actual);
+    }
+
+    public int statusCode() {
+        return response.statusCode();
+    }
+    public Map<String, List<String>> headers() {
+        return response.headers();
+    }
+    public String header(final String name) {
+        return response.header(name);
+    }
+    public InputStream body() throws IOException {
+        if (body == null) body = new FilterInputStream(response.body()) {
+            private final Checksum checksum = mode.newChecksum();
+            private boolean verified;
+
+            public int read() throws IOException {
+                final int value = super.read();
+                if (value == -1) verifyAtEnd();
+                else checksum.update(value);
+                return value;
+            }
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                final int read = super.read(buffer, offset, length);
+                if (read == -1) verifyAtEnd();
+                else checksum.update(buffer, offset, read);
+                return read;
+            }
+            // Skipped bytes still have to go into the checksum
+            public long skip(final long n) throws IOException {
+                if (n <= 0) return 0;
+                final byte[] buffer = pool.acquire((int) Math.min(n, Constants.BLOCK_SIZE));
+                long skipped = 0;
+                try {
+                    while (skipped < n) {
+                        final int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                        if (read == -1) break;
+                        skipped += read;
+                    }
+                } finally {
+                    pool.release(buffer);
+                }
+                return skipped;
+            }
+            public boolean markSupported() {
+                return false;
+            }
+
+            private void verifyAtEnd() throws IOException {
+                if (verified) return;
+                verified = true;
+                final String actual = S3PayloadMode.encodeChecksum(checksum);
+                if (!expected.equals(actual)) throw newMismatch(mode, expected, actual);
+            }
+        };
+        return body;
+    }
+
+    private static IOException newMismatch(final S3PayloadMode mode, final String expected, final String actual) {
+        return new IOException("Body does not match its " + mode.checksumAlgorithm + " checksum, expected "
+            + expected + " but received " + actual);
+    }
+
+}
@@ -0,0 +1,112 @@
+package js3.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static js3.internal.S3Signer.signChunk;
+
+/**
+ * Encodes a stream in the aws-chunked format, signing every chunk with a signature that chains on
+ * the one before it, starting from the seed signature of the request. Only one chunk is held in
+ * memory at a time.
+ * https://docs.aws.amazon.com/AmazonS3/latest/API/sigv4-streaming.html
+ */
+public final class ChunkSigningInputStream extends InputStream {
+
+    private static final int SIGNATURE_OVERHEAD = ";chunk-signature=".length() + 64 + 2 + 2;
+
+    private final InputStream source;
+    private final String dateTime;
+    private final String scope;
+    private final byte[] signKey;
+    private final byte[] chunk;
+
+    private String signature;
+    private long remaining;
+    private boolean finished;
+
+    private byte[] header = new byte[0];
+    private int headerPos;
+    private int chunkLength;
+    private int chunkPos;
+    private int trailerPos = 2;
+
+    public ChunkSigningInputStream(final InputStream source, final long length, final int chunkSize,
+                                   final String dateTime, final String scope, final byte[] signKey,
+                                   final String seedSignature) {
+        this.source = source;
+        this.remaining = length;
+        this.dateTime = dateTime;
+        this.scope = scope;
+        this.signKey = signKey;
+        this.signature = seedSignature;
+        this.chunk = new byte[(int) Math.max(1, Math.min(chunkSize, length))];
+    }
+
+    public static long toEncodedLength(final long length, final int chunkSize) {
+        final long fullChunks = length / chunkSize;
+        final int lastChunk = (int) (length % chunkSize);
+        long encoded = fullChunks * (Integer.toHexString(chunkSize).length() + SIGNATURE_OVERHEAD + chunkSize);
+        if (lastChunk > 0) encoded += Integer.toHexString(lastChunk).length() + SIGNATURE_OVERHEAD + lastChunk;
+        return encoded + 1 + SIGNATURE_OVERHEAD;
+    }
+
+    public int read() throws IOException {
+        final byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        if (length == 0) return 0;
+        if (headerPos == header.length && chunkPos == chunkLength && trailerPos == 2 && !nextChunk()) return -1;
+
+        int written = 0;
+        while (written < length) {
+            if (headerPos < header.length) {
+                final int count = Math.min(length - written, header.length - headerPos);
+                System.arraycopy(header, headerPos, buffer, offset + written, count);
+                headerPos += count;
+                written += count;
+            } else if (chunkPos < chunkLength) {
+                final int count = Math.min(length - written, chunkLength - chunkPos);
+                System.arraycopy(chunk, chunkPos, buffer, offset + written, count);
+                chunkPos += count;
+                written += count;
+            } else if (trailerPos < 2) {
+                buffer[offset + written++] = (byte) (trailerPos++ == 0 ? '\r' : '\n');
+            } else break;
+        }
+        return written;
+    }
+
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private boolean nextChunk() throws IOException {
+        if (finished) return false;
+
+        chunkLength = (int) Math.min(chunk.length, remaining);
+        readChunk(chunkLength);
+        remaining -= chunkLength;
+        finished = chunkLength == 0;
+
+        signature = signChunk(signKey, dateTime, scope, signature, chunk, 0, chunkLength);
+        header = (Integer.toHexString(chunkLength) + ";chunk-signature=" + signature + "\r\n").getBytes(US_ASCII);
+        headerPos = 0;
+        chunkPos = 0;
+        trailerPos = 0;
+        return true;
+    }
+
+    private void readChunk(final int size) throws IOException {
+        int offset = 0;
+        while (offset < size) {
+            final int read = source.read(chunk, offset, size - offset);
+            if (read == -1) throw new IOException("Stream ended before the declared content length was read");
+            offset += read;
+        }
+    }
+
+}
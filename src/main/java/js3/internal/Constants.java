@@ -1,13 +1,41 @@
 package js3.internal;
 
+import js3.S3PayloadMode;
+import js3.buffer.S3BufferPool;
+import js3.buffer.StripedBufferPool;
+
+import java.net.http.HttpClient;
 import java.time.Clock;
+import java.util.concurrent.ExecutorService;
+
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static js3.util.Concurrency.newDaemonThreadFactory;
 
 public enum Constants {;
 
     public static final Clock clock = Clock.systemUTC();
+    public static final ExecutorService DEFAULT_EXECUTOR = newCachedThreadPool(newDaemonThreadFactory("js3-worker"));
 
     public static final int DEFAULT_CONNECT_TIMEOUT = 60_000;
     public static final int DEFAULT_READ_TIMEOUT = 60_000;
+    public static final HttpClient.Version DEFAULT_HTTP_VERSION = HttpClient.Version.HTTP_1_1;
     public static final int BLOCK_SIZE = 16 * 1024;
+    public static final S3BufferPool DEFAULT_BUFFER_POOL = new StripedBufferPool(1024 * 1024, 32L * 1024 * 1024);
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    public static final int DEFAULT_PART_SIZE = 16 * 1024 * 1024;
+    public static final long DEFAULT_MULTIPART_THRESHOLD = 64L * 1024 * 1024;
+    public static final int DEFAULT_PARALLELISM = 8;
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    public static final S3PayloadMode DEFAULT_PAYLOAD_MODE = S3PayloadMode.SIGNED;
+    public static final int MAX_PARTS = 10_000;
+    public static final int MAX_DELETE_KEYS = 1000;
+    public static final long MAX_PRESIGN_SECONDS = 7 * 24 * 60 * 60;
+
+    public static final String STREAMING_PAYLOAD = "STREAMING-AWS4-HMAC-SHA256-PAYLOAD";
+    public static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    public static final String STREAMING_UNSIGNED_TRAILER = "STREAMING-UNSIGNED-PAYLOAD-TRAILER";
+    public static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    public static final String CHECKPOINT_SUFFIX = ".js3-checkpoint";
+    public static final String CHECKPOINT_MAGIC = "js3-checkpoint-v1";
 
 }
@@ -0,0 +1,72 @@
+package js3.internal;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a reader into the records between occurrences of a delimiter. Unlike a Scanner, read
+ * failures are not mistaken for the end of the input, they are thrown as UncheckedIOException.
+ * Consecutive delimiters give empty records, a delimiter at the very end does not.
+ */
+public final class DelimitedRecordIterator implements Iterator<String> {
+
+    private final Reader reader;
+    private final String delimiter;
+    private final StringBuilder record = new StringBuilder();
+    private String next;
+    private boolean ended;
+
+    public DelimitedRecordIterator(final Reader reader, final String delimiter) {
+        if (delimiter.isEmpty()) throw new IllegalArgumentException("Delimiter must not be empty");
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    public boolean hasNext() {
+        if (next != null) return true;
+        if (ended) return false;
+        try {
+            next = readRecord();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return next != null;
+    }
+
+    public String next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        final String record = next;
+        next = null;
+        return record;
+    }
+
+    private String readRecord() throws IOException {
+        final char last = delimiter.charAt(delimiter.length() - 1);
+        int c; while ((c = reader.read()) != -1) {
+            record.append((char) c);
+            if (c == last && endsWithDelimiter()) {
+                final String value = record.substring(0, record.length() - delimiter.length());
+                record.setLength(0);
+                return value;
+            }
+        }
+        ended = true;
+        if (record.length() == 0) return null;
+        final String value = record.toString();
+        record.setLength(0);
+        return value;
+    }
+
+    private boolean endsWithDelimiter() {
+        final int start = record.length() - delimiter.length();
+        if (start < 0) return false;
+        for (int i = 0; i < delimiter.length(); i++) {
+            if (record.charAt(start + i) != delimiter.charAt(i)) return false;
+        }
+        return true;
+    }
+
+}
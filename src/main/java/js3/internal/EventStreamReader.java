@@ -0,0 +1,126 @@
+package js3.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads the binary application/vnd.amazon.eventstream framing one message at a time, straight
+ * from the connection. Every message is a prelude with the total and header lengths and a CRC of
+ * those, then the headers, the payload and a CRC of everything before it. Both checksums are
+ * verified, a corrupted frame fails the read instead of handing out garbage.
+ * https://docs.aws.amazon.com/AmazonS3/latest/API/RESTSelectObjectAppendix.html
+ */
+public final class EventStreamReader {
+
+    private static final int PRELUDE_LENGTH = 12;
+    private static final int MESSAGE_CRC_LENGTH = 4;
+    private static final int MAX_MESSAGE_LENGTH = 16 * 1024 * 1024;
+
+    private final InputStream in;
+    private final byte[] prelude = new byte[PRELUDE_LENGTH];
+    private final CRC32 crc = new CRC32();
+
+    public EventStreamReader(final InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the next message, or null when the stream ends cleanly between two messages.
+     */
+    public Message next() throws IOException {
+        final int read = in.readNBytes(prelude, 0, PRELUDE_LENGTH);
+        if (read == 0) return null;
+        if (read < PRELUDE_LENGTH) throw new EOFException("Event stream ended inside a message prelude");
+
+        final ByteBuffer preludeBuffer = ByteBuffer.wrap(prelude);
+        final int totalLength = preludeBuffer.getInt();
+        final int headersLength = preludeBuffer.getInt();
+        final int preludeCrc = preludeBuffer.getInt();
+        crc.reset();
+        crc.update(prelude, 0, 8);
+        if ((int) crc.getValue() != preludeCrc) throw new IOException("Event stream prelude checksum mismatch");
+        if (totalLength < PRELUDE_LENGTH + MESSAGE_CRC_LENGTH || totalLength > MAX_MESSAGE_LENGTH
+                || headersLength < 0 || headersLength > totalLength - PRELUDE_LENGTH - MESSAGE_CRC_LENGTH)
+            throw new IOException("Event stream message has invalid lengths " + totalLength + "/" + headersLength);
+
+        final byte[] message = in.readNBytes(totalLength - PRELUDE_LENGTH);
+        if (message.length < totalLength - PRELUDE_LENGTH) throw new EOFException("Event stream ended inside a message");
+        crc.update(prelude, 8, 4);
+        crc.update(message, 0, message.length - MESSAGE_CRC_LENGTH);
+        if ((int) crc.getValue() != ByteBuffer.wrap(message, message.length - MESSAGE_CRC_LENGTH, 4).getInt())
+            throw new IOException("Event stream message checksum mismatch");
+
+        final Map<String, String> headers = parseHeaders(ByteBuffer.wrap(message, 0, headersLength));
+        final int payloadLength = message.length - headersLength - MESSAGE_CRC_LENGTH;
+        return new Message(headers, message, headersLength, payloadLength);
+    }
+
+    /**
+     * Keeps the string headers, which are all S3 sends. Other value types are skipped.
+     */
+    private static Map<String, String> parseHeaders(final ByteBuffer buffer) throws IOException {
+        final Map<String, String> headers = new HashMap<>();
+        try {
+            while (buffer.hasRemaining()) {
+                final byte[] name = new byte[buffer.get() & 0xFF];
+                buffer.get(name);
+                final int type = buffer.get();
+                switch (type) {
+                    case 0, 1 -> {}
+                    case 2 -> buffer.position(buffer.position() + 1);
+                    case 3 -> buffer.position(buffer.position() + 2);
+                    case 4 -> buffer.position(buffer.position() + 4);
+                    case 5, 8 -> buffer.position(buffer.position() + 8);
+                    case 6 -> {
+                        final int length = buffer.getShort() & 0xFFFF;
+                        buffer.position(buffer.position() + length);
+                    }
+                    case 7 -> {
+                        final byte[] value = new byte[buffer.getShort() & 0xFFFF];
+                        buffer.get(value);
+                        headers.put(new String(name, UTF_8), new String(value, UTF_8));
+                    }
+                    case 9 -> buffer.position(buffer.position() + 16);
+                    default -> throw new IOException("Event stream header has unknown type " + type);
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Event stream headers are malformed", e);
+        }
+        return headers;
+    }
+
+    public static final class Message {
+        public final Map<String, String> headers;
+        private final byte[] data;
+        public final int payloadOffset;
+        public final int payloadLength;
+
+        private Message(final Map<String, String> headers, final byte[] data, final int payloadOffset, final int payloadLength) {
+            this.headers = headers;
+            this.data = data;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+        }
+
+        public String header(final String name) {
+            return headers.get(name);
+        }
+
+        /**
+         * The payload sits in the buffer that holds the whole message, between payloadOffset and
+         * payloadOffset + payloadLength. Sharing it saves a copy per message.
+         */
+        public byte[] buffer() {
+            return data;
+        }
+    }
+
+}
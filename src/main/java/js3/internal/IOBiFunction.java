@@ -0,0 +1,10 @@
+package js3.internal;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface IOBiFunction<T, U, R> {
+
+    R apply(T first, U second) throws IOException;
+
+}
@@ -0,0 +1,10 @@
+package js3.internal;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface IOCallable<T> {
+
+    T call() throws IOException;
+
+}
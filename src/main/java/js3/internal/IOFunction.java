@@ -0,0 +1,10 @@
+package js3.internal;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface IOFunction<T, R> {
+
+    R apply(T input) throws IOException;
+
+}
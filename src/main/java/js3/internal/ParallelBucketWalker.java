@@ -0,0 +1,318 @@
+package js3.internal;
+
+import js3.actions.S3ListObjects;
+import js3.model.S3ObjectMetaData;
+import js3.model.S3ObjectsPage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lists a bucket, or a prefix in it, with several listing chains running at the same time.
+ * <p>
+ * The walk starts by discovering the prefix tree with delimiter listings, splitting the key space
+ * into shards: the prefixes found plus the objects that sit directly in the expanded levels. A
+ * prefix whose delimiter listing does not fit in one page is not expanded, it becomes a single
+ * shard. Every prefix shard is then listed as one flat chain of continuation tokens, with up to
+ * parallelism chains in flight.
+ * <p>
+ * Unordered walks return pages as they arrive from any shard. Ordered walks return the keys in
+ * the same order as a plain listing, the shards run ahead in a window of parallelism shards and
+ * are drained one after the other. Either way every shard buffers at most a few pages, so memory
+ * stays bounded when the consumer is slower than the network.
+ */
+public final class ParallelBucketWalker implements Iterator<S3ObjectMetaData> {
+
+    private static final int MAX_DISCOVERY_DEPTH = 4;
+    private static final int SHARDS_PER_THREAD = 4;
+    private static final int BUFFERED_PAGES = 2;
+    private static final long POLL_MILLIS = 100;
+
+    // Stops the workers of a walk whose stream was dropped without being closed
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Walk walk;
+    private final Cleaner.Cleanable cleanable;
+    private Iterator<S3ObjectMetaData> current = Collections.emptyIterator();
+
+    public ParallelBucketWalker(final S3ListObjects client, final String bucket, final String prefix, final String delimiter,
+                                final int parallelism, final Executor executor, final boolean ordered) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+        this.walk = new Walk(client, bucket, prefix == null ? "" : prefix, delimiter, parallelism, executor, ordered);
+        this.cleanable = CLEANER.register(this, walk::close);
+    }
+
+    public boolean hasNext() {
+        try {
+            while (!current.hasNext()) {
+                final Batch batch = walk.nextBatch();
+                if (batch == null) return false;
+                current = batch.objects.iterator();
+            }
+            return true;
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public S3ObjectMetaData next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return current.next();
+    }
+
+    public void close() {
+        cleanable.clean();
+        current = Collections.emptyIterator();
+    }
+
+    /**
+     * The state the workers share. It is kept apart from the iterator, so the iterator can become
+     * unreachable while workers are still running.
+     */
+    private static final class Walk {
+
+        private final S3ListObjects client;
+        private final String bucket;
+        private final String prefix;
+        private final String delimiter;
+        private final int parallelism;
+        private final Executor executor;
+        private final boolean ordered;
+
+        private List<Shard> shards;
+        private BlockingQueue<Batch> sharedQueue;
+        private int finishedWorkers;
+        private int currentShard;
+        private int startedShards;
+        private IOException failure;
+        private volatile boolean closed;
+
+        private Walk(final S3ListObjects client, final String bucket, final String prefix, final String delimiter,
+                     final int parallelism, final Executor executor, final boolean ordered) {
+            this.client = client;
+            this.bucket = bucket;
+            this.prefix = prefix;
+            this.delimiter = delimiter;
+            this.parallelism = parallelism;
+            this.executor = executor;
+            this.ordered = ordered;
+        }
+
+        /**
+         * Returns null once the walk is done or closed. After a failure every call throws it again,
+         * the workers are gone and waiting on their queues would block forever.
+         */
+        private Batch nextBatch() throws IOException {
+            if (failure != null) throw failure;
+            if (closed) return null;
+            try {
+                if (shards == null) start();
+                return ordered ? nextOrderedBatch() : nextUnorderedBatch();
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        private void close() {
+            closed = true;
+        }
+
+        private void start() throws IOException {
+            shards = discoverShards();
+            if (ordered) {
+                for (final Shard shard : shards) shard.queue = new ArrayBlockingQueue<>(BUFFERED_PAGES + 1);
+                startShardsUpTo(parallelism);
+            } else {
+                sharedQueue = new ArrayBlockingQueue<>(parallelism * BUFFERED_PAGES + parallelism);
+                final AtomicInteger nextShard = new AtomicInteger();
+                for (int i = 0; i < Math.min(parallelism, shards.size()); i++) {
+                    executor.execute(() -> {
+                        try {
+                            for (int index; (index = nextShard.getAndIncrement()) < shards.size(); ) {
+                                listShard(shards.get(index), sharedQueue);
+                            }
+                            put(sharedQueue, Batch.LAST);
+                        } catch (IOException | RuntimeException e) {
+                            putFailure(sharedQueue, e);
+                        }
+                    });
+                }
+            }
+        }
+
+        private Batch nextUnorderedBatch() throws IOException {
+            while (finishedWorkers < Math.min(parallelism, shards.size())) {
+                final Batch batch = take(sharedQueue);
+                if (batch.failure != null) throw batch.failure;
+                if (batch == Batch.LAST) finishedWorkers++;
+                else return batch;
+            }
+            return null;
+        }
+
+        private Batch nextOrderedBatch() throws IOException {
+            while (currentShard < shards.size()) {
+                final Batch batch = take(shards.get(currentShard).queue);
+                if (batch.failure != null) throw batch.failure;
+                if (batch != Batch.LAST) return batch;
+                currentShard++;
+                startShardsUpTo(currentShard + parallelism);
+            }
+            return null;
+        }
+
+        private void startShardsUpTo(final int limit) {
+            for (; startedShards < Math.min(limit, shards.size()); startedShards++) {
+                final Shard shard = shards.get(startedShards);
+                executor.execute(() -> {
+                    try {
+                        listShard(shard, shard.queue);
+                        put(shard.queue, Batch.LAST);
+                    } catch (IOException | RuntimeException e) {
+                        putFailure(shard.queue, e);
+                    }
+                });
+            }
+        }
+
+        private void listShard(final Shard shard, final BlockingQueue<Batch> queue) throws IOException {
+            if (shard.prefix == null) {
+                put(queue, new Batch(shard.objects, null));
+                return;
+            }
+            String token = null; do {
+                final S3ObjectsPage page = client.listS3ObjectsPage(bucket, shard.prefix, null, 0, null, token);
+                if (!page.objects.isEmpty()) put(queue, new Batch(page.objects, null));
+                token = page.nextContinuationToken;
+            } while (token != null && !closed);
+        }
+
+        private List<Shard> discoverShards() throws IOException {
+            List<Shard> shards = List.of(new Shard(prefix, prefix, null, false));
+            for (int depth = 0; depth < MAX_DISCOVERY_DEPTH && countPrefixShards(shards) < parallelism * SHARDS_PER_THREAD; depth++) {
+                if (shards.stream().allMatch(shard -> shard.leaf)) break;
+
+                final var listings = new BoundedExecutor(executor, parallelism);
+                final var expanded = new ArrayList<CompletableFuture<List<Shard>>>(shards.size());
+                for (final Shard shard : shards) {
+                    expanded.add(shard.leaf ? CompletableFuture.completedFuture(List.of(shard)) : listings.submit(() -> expand(shard)));
+                }
+                listings.awaitAll();
+
+                final var next = new ArrayList<Shard>();
+                for (final var future : expanded) next.addAll(future.join());
+                shards = next;
+            }
+
+            final var sorted = new ArrayList<>(shards);
+            sorted.sort(Comparator.comparing(shard -> shard.sortKey));
+            return mergeObjectShards(sorted);
+        }
+
+        /**
+         * Replaces a prefix by its direct objects and sub-prefixes, unless the level is too big to list
+         * in one page. In that case listing the prefix flat is cheaper than expanding it.
+         */
+        private List<Shard> expand(final Shard shard) throws IOException {
+            final S3ObjectsPage page = client.listS3ObjectsPage(bucket, shard.prefix, delimiter, 0, null, null);
+            if (page.nextContinuationToken != null || page.commonPrefixes.isEmpty())
+                return List.of(new Shard(shard.sortKey, shard.prefix, null, true));
+
+            final var shards = new ArrayList<Shard>(page.objects.size() + page.commonPrefixes.size());
+            for (final S3ObjectMetaData object : page.objects) shards.add(new Shard(object.key, null, List.of(object), true));
+            for (final String commonPrefix : page.commonPrefixes) shards.add(new Shard(commonPrefix, commonPrefix, null, false));
+            return shards;
+        }
+
+        private static List<Shard> mergeObjectShards(final List<Shard> sorted) {
+            final var merged = new ArrayList<Shard>(sorted.size());
+            List<S3ObjectMetaData> objects = null;
+            for (final Shard shard : sorted) {
+                if (shard.prefix != null) {
+                    objects = null;
+                    merged.add(shard);
+                } else if (objects == null) {
+                    objects = new ArrayList<>(shard.objects);
+                    merged.add(new Shard(shard.sortKey, null, objects, true));
+                } else {
+                    objects.addAll(shard.objects);
+                }
+            }
+            return merged;
+        }
+
+        private static int countPrefixShards(final List<Shard> shards) {
+            int count = 0;
+            for (final Shard shard : shards) if (shard.prefix != null) count++;
+            return count;
+        }
+
+        private void put(final BlockingQueue<Batch> queue, final Batch batch) throws InterruptedIOException {
+            try {
+                while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (closed) throw new InterruptedIOException("Walk was closed");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while buffering a page");
+            }
+        }
+
+        private void putFailure(final BlockingQueue<Batch> queue, final Exception e) {
+            if (closed) return;
+            final IOException failure = e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+            try {
+                put(queue, new Batch(null, failure));
+            } catch (InterruptedIOException ignored) {}
+        }
+
+        private static Batch take(final BlockingQueue<Batch> queue) throws InterruptedIOException {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a page");
+            }
+        }
+
+    }
+
+    private static final class Shard {
+        private final String sortKey;
+        private final String prefix;
+        private final List<S3ObjectMetaData> objects;
+        private final boolean leaf;
+        private BlockingQueue<Batch> queue;
+
+        private Shard(final String sortKey, final String prefix, final List<S3ObjectMetaData> objects, final boolean leaf) {
+            this.sortKey = sortKey;
+            this.prefix = prefix;
+            this.objects = objects;
+            this.leaf = leaf;
+        }
+    }
+
+    private static final class Batch {
+        private static final Batch LAST = new Batch(List.of(), null);
+
+        private final List<S3ObjectMetaData> objects;
+        private final IOException failure;
+
+        private Batch(final List<S3ObjectMetaData> objects, final IOException failure) {
+            this.objects = objects;
+            this.failure = failure;
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package js3.internal;
+
+import js3.model.S3ObjectMetaData;
+import js3.model.S3ObjectsPage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Walks a listing page by page. The first page is requested on the first call to {@link #hasNext()};
+ * after that, as soon as a page arrives the request for the one after it is sent
+ * in the background, so the network fetch overlaps with the caller working through the current page.
+ * Only the page being consumed and the one being fetched are held in memory.
+ */
+public final class PrefetchingPageIterator implements Iterator<S3ObjectMetaData> {
+
+    private final IOFunction<String, S3ObjectsPage> fetchPage;
+    private final Executor executor;
+
+    private Iterator<S3ObjectMetaData> current = Collections.emptyIterator();
+    private CompletableFuture<S3ObjectsPage> next;
+    private boolean started;
+
+    public PrefetchingPageIterator(final IOFunction<String, S3ObjectsPage> fetchPage, final Executor executor) {
+        this.fetchPage = fetchPage;
+        this.executor = executor;
+    }
+
+    public boolean hasNext() {
+        if (!started) {
+            started = true;
+            next = fetchAsync(null);
+        }
+        while (!current.hasNext()) {
+            if (next == null) return false;
+
+            final S3ObjectsPage page = await(next);
+            next = page.nextContinuationToken == null ? null : fetchAsync(page.nextContinuationToken);
+            current = page.objects.iterator();
+        }
+        return true;
+    }
+
+    public S3ObjectMetaData next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return current.next();
+    }
+
+    /**
+     * Stops prefetching. A page that is already being fetched is left to finish and dropped.
+     */
+    public void close() {
+        started = true;
+        next = null;
+        current = Collections.emptyIterator();
+    }
+
+    private CompletableFuture<S3ObjectsPage> fetchAsync(final String continuationToken) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return fetchPage.apply(continuationToken);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private static S3ObjectsPage await(final CompletableFuture<S3ObjectsPage> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) throw new UncheckedIOException((IOException) e.getCause());
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+package js3.internal;
+
+import js3.metrics.S3RequestEvent;
+import js3.metrics.S3RequestListener;
+import js3.metrics.S3RequestMetrics;
+import js3.transport.ByteBufferInputStream;
+import js3.transport.S3Response;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures one attempt of a request for the request listener and the Flight Recorder event. The
+ * request body is wrapped to see when the transport starts and finishes reading it, the response
+ * body to count the bytes the caller reads. Only created when someone is interested, see start.
+ */
+final class RequestTimer {
+
+    private final S3RequestListener listener;
+    private final S3RequestEvent event;
+    private final String operation;
+    private final String method;
+    private final String path;
+    private final int attempt;
+    private final long startedAt = System.nanoTime();
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private long signedAt;
+    private volatile long uploadStartedAt = -1;
+    private volatile long uploadFinishedAt = -1;
+    private volatile long requestBytes;
+    private long headersAt = -1;
+
+    private RequestTimer(final S3RequestListener listener, final S3RequestEvent event, final String operation,
+                         final String method, final String path, final int attempt) {
+        this.listener = listener;
+        this.event = event;
+        this.operation = operation;
+        this.method = method;
+        this.path = path;
+        this.attempt = attempt;
+    }
+
+    /**
+     * @return null when there is no listener and no recording of the event, nothing is measured then.
+     */
+    static RequestTimer start(final S3RequestListener listener, final String method, final String path,
+                              final String query, final Map<String, String> headers, final int attempt) {
+        final S3RequestEvent event = new S3RequestEvent();
+        final boolean recording = event.isEnabled();
+        if (listener == null && !recording) return null;
+        if (recording) event.begin();
+        return new RequestTimer(listener, recording ? event : null, toOperation(method, path, query, headers), method, path, attempt);
+    }
+
+    void signed() {
+        signedAt = System.nanoTime();
+    }
+
+    InputStream measureRequestBody(final InputStream body) {
+        if (body == null) return null;
+        if (body instanceof ByteBufferInputStream) return ((ByteBufferInputStream) body).withProgress(this::measure);
+        return new FilterInputStream(body) {
+            public int read() throws IOException {
+                final int value = super.read();
+                measure(value == -1 ? -1 : 1);
+                return value;
+            }
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                return measure(super.read(buffer, offset, length));
+            }
+        };
+    }
+
+    private int measure(final int read) {
+        if (read == -1 && uploadFinishedAt != -1) return read;
+        if (uploadStartedAt == -1) uploadStartedAt = System.nanoTime();
+        if (read == -1) {
+            if (uploadFinishedAt == -1) uploadFinishedAt = System.nanoTime();
+        } else {
+            requestBytes += read;
+        }
+        return read;
+    }
+
+    /**
+     * Wraps the response so that the attempt is reported when the caller closes it.
+     */
+    S3Response responded(final S3Response response) {
+        headersAt = System.nanoTime();
+        return new MeasuredResponse(response);
+    }
+
+    void failed(final int statusCode, final IOException failure) {
+        if (headersAt == -1 && statusCode != 0) headersAt = System.nanoTime();
+        finish(statusCode, failure, 0, headersAt == -1 ? -1 : 0);
+    }
+
+    void completedAsync(final int statusCode, final Throwable failure, final long responseBytes) {
+        finish(statusCode, failure, responseBytes, -1);
+    }
+
+    private void finish(final int statusCode, final Throwable failure, final long responseBytes, final long bodyNanos) {
+        if (!finished.compareAndSet(false, true)) return;
+        final long now = System.nanoTime();
+        final long sentAt = uploadFinishedAt != -1 ? uploadFinishedAt : signedAt;
+        final var metrics = new S3RequestMetrics(operation, method, path, attempt, statusCode, failure,
+            requestBytes, responseBytes,
+            signedAt - startedAt,
+            uploadStartedAt == -1 ? -1 : uploadStartedAt - signedAt,
+            uploadStartedAt == -1 || uploadFinishedAt == -1 ? -1 : uploadFinishedAt - uploadStartedAt,
+            headersAt == -1 ? -1 : headersAt - sentAt,
+            bodyNanos == -1 ? -1 : now - headersAt,
+            now - startedAt);
+
+        if (listener != null) listener.onRequestCompleted(metrics);
+        if (event != null) commit(metrics);
+    }
+
+    private void commit(final S3RequestMetrics metrics) {
+        event.operation = metrics.operation;
+        event.method = metrics.method;
+        event.path = metrics.path;
+        event.attempt = metrics.attempt;
+        event.statusCode = metrics.statusCode;
+        event.failure = metrics.failure == null ? null : metrics.failure.toString();
+        event.requestBytes = metrics.requestBytes;
+        event.responseBytes = metrics.responseBytes;
+        event.signNanos = metrics.signNanos;
+        event.connectNanos = metrics.connectNanos;
+        event.uploadNanos = metrics.uploadNanos;
+        event.firstByteNanos = metrics.firstByteNanos;
+        event.bodyNanos = metrics.bodyNanos;
+        event.commit();
+    }
+
+    /**
+     * Names the S3 API operation from the shape of the request, so the actions don't have to.
+     */
+    static String toOperation(final String method, final String path, final String query, final Map<String, String> headers) {
+        final boolean isObject = path.indexOf('/', 1) != -1;
+        final String parameters = query == null ? "" : "&" + query;
+        switch (method) {
+            case "GET":
+                if (path.equals("/")) return "ListBuckets";
+                return isObject ? "GetObject" : "ListObjectsV2";
+            case "HEAD":
+                return isObject ? "HeadObject" : "HeadBucket";
+            case "PUT":
+                if (!isObject) return "CreateBucket";
+                final boolean copy = headers.containsKey("x-amz-copy-source");
+                if (parameters.contains("&partNumber=")) return copy ? "UploadPartCopy" : "UploadPart";
+                return copy ? "CopyObject" : "PutObject";
+            case "DELETE":
+                if (!isObject) return "DeleteBucket";
+                return parameters.contains("&uploadId=") ? "AbortMultipartUpload" : "DeleteObject";
+            case "POST":
+                if (hasParameter(parameters, "uploads")) return "CreateMultipartUpload";
+                if (parameters.contains("&uploadId=")) return "CompleteMultipartUpload";
+                if (hasParameter(parameters, "delete")) return "DeleteObjects";
+                if (hasParameter(parameters, "select")) return "SelectObjectContent";
+                return "Post";
+            default:
+                return method;
+        }
+    }
+
+    private static boolean hasParameter(final String parameters, final String name) {
+        return parameters.contains("&" + name + "&") || parameters.endsWith("&" + name)
+            || parameters.contains("&" + name + "=");
+    }
+
+    private final class MeasuredResponse implements S3Response {
+
+        private final S3Response response;
+        private InputStream body;
+        private long responseBytes;
+
+        private MeasuredResponse(final S3Response response) {
+            this.response = response;
+        }
+
+        public int statusCode() {
+            return response.statusCode();
+        }
+        public Map<String, List<String>> headers() {
+            return response.headers();
+        }
+        public String header(final String name) {
+            return response.header(name);
+        }
+        public InputStream body() throws IOException {
+            if (body == null) body = new FilterInputStream(response.body()) {
+                public int read() throws IOException {
+                    final int value = super.read();
+                    if (value != -1) responseBytes++;
+                    return value;
+                }
+                public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                    final int read = super.read(buffer, offset, length);
+                    if (read > 0) responseBytes += read;
+                    return read;
+                }
+                public long skip(final long n) throws IOException {
+                    final long skipped = super.skip(n);
+                    responseBytes += skipped;
+                    return skipped;
+                }
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        finish(response.statusCode(), null, responseBytes, 0);
+                    }
+                }
+            };
+            return body;
+        }
+        public void close() throws IOException {
+            try {
+                response.close();
+            } finally {
+                finish(response.statusCode(), null, responseBytes, 0);
+            }
+        }
+    }
+
+}
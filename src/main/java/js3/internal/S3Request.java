@@ -1,19 +1,38 @@
 package js3.internal;
 
+import js3.S3ClientConfiguration;
+import js3.S3Exception;
+import js3.S3PayloadMode;
+import js3.buffer.S3BufferPool;
+import js3.retry.AdaptiveConcurrencyLimiter;
+import js3.retry.S3RetryPolicy;
+import js3.transport.BufferedS3Response;
+import js3.transport.ByteBufferInputStream;
+import js3.transport.S3Response;
+
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
-import java.net.URL;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 import static java.lang.String.join;
-import static js3.internal.Constants.clock;
-import static js3.util.Coding.encodeHex;
-import static js3.util.Crypto.hmacSha256;
-import static js3.util.Crypto.sha256;
+import static js3.internal.ChecksumVerifyingResponse.verifying;
+import static js3.internal.Constants.*;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static js3.internal.S3ResponseParser.parseErrorResponse;
+import static js3.internal.S3Signer.*;
+import static js3.retry.S3RetryPolicy.isThrottled;
+import static js3.util.HTTP.encodeURI;
+import static js3.util.HTTP.isNotModified;
 import static js3.util.HTTP.isSuccessful;
 import static js3.util.Time.toIso8601;
 import static js3.util.Time.toShortDate;
@@ -30,8 +49,19 @@ public final class S3Request {
     private String method = "GET";
     private String path;
     private String query;
-    private Map<String, List<String>> headers = new HashMap<>();
-    private byte[] body = new byte[0];
+    private Map<String, String> headers = new HashMap<>();
+    private ByteBuffer body = ByteBuffer.allocate(0);
+    private InputStream stream;
+    private long streamLength;
+    private Boolean idempotent;
+
+    private String payloadHash;
+    private S3PayloadMode trailer;
+    private S3PayloadMode verify;
+    private String dateTime;
+    private String scope;
+    private byte[] signKey;
+    private String signature;
 
     public S3Request(final URI endpoint, final String region, final String accessKey, final String secretKey) {
         this.protocol = endpoint.getScheme();
@@ -56,44 +86,245 @@ public final class S3Request {
     }
     public S3Request header(final String key, final String value) {
         if (value == null) return this;
-        headers.put(key, Collections.singletonList(value));
+        headers.put(key, value);
         return this;
     }
     public S3Request body(final byte[] data) {
-        this.body = data;
+        this.body = data == null ? ByteBuffer.allocate(0) : ByteBuffer.wrap(data);
+        return this;
+    }
+    /**
+     * Sends the remaining bytes of the buffer. The buffer is hashed and sent where it is, its
+     * position is not moved, and it must not change until the request has completed.
+     */
+    public S3Request body(final ByteBuffer data) {
+        this.body = data.duplicate();
+        return this;
+    }
+    /**
+     * Sends the body as it is read from the stream, using the aws-chunked encoding so that every
+     * chunk is signed separately, or checksummed in a trailer when the payload mode has a
+     * checksum. Only one chunk is held in memory at a time.
+     */
+    public S3Request body(final InputStream data, final long length) {
+        this.stream = data;
+        this.streamLength = length;
         return this;
     }
 
-    public HttpURLConnection execute(final int connectTimeout, final int readTimeout) throws IOException {
-        addSignatureHeader();
-        final HttpURLConnection connection = (HttpURLConnection) newURL().openConnection();
+    /**
+     * Marks whether sending the request twice has the same effect as sending it once. By default
+     * only POST requests are not idempotent.
+     */
+    public S3Request idempotent(final boolean idempotent) {
+        this.idempotent = idempotent;
+        return this;
+    }
 
-        try {
-            connection.setConnectTimeout(connectTimeout);
-            connection.setReadTimeout(readTimeout);
-            connection.setRequestMethod(method);
-            remapHeaders(headers).forEach(connection::setRequestProperty);
-            if (body != null && body.length > 0) {
-                connection.setDoOutput(true);
-                try (final OutputStream out = connection.getOutputStream()) {
-                    out.write(body);
-                }
+    /**
+     * Signs the request and sends it with the transport of the configuration. Failures are retried
+     * as the retry policy of the configuration decides, every attempt is signed again. With a
+     * concurrency limiter configured every attempt first waits for a slot. The returned response
+     * is successful, and must be closed by the caller.
+     */
+    public S3Response execute(final S3ClientConfiguration configuration) throws IOException {
+        final S3RetryPolicy retryPolicy = configuration.getS3RetryPolicy();
+        final AdaptiveConcurrencyLimiter limiter = configuration.getS3ConcurrencyLimiter();
+        for (int attempt = 1; ; attempt++) {
+            IOException failure = null;
+            if (limiter != null) limiter.acquire();
+            try {
+                return send(configuration, attempt);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                if (limiter != null) limiter.release(failure != null && isThrottled(failure));
             }
 
-            if (!isSuccessful(connection))
-                throw new IOException("Unexpected http code " + connection.getResponseCode());
+            final long delay = isReplayable() ? retryPolicy.nextDelayMillis(attempt, isIdempotent(), failure) : -1;
+            if (delay < 0) throw failure;
+            sleep(delay);
+        }
+    }
+
+    private S3Response send(final S3ClientConfiguration configuration, final int attempt) throws IOException {
+        final RequestTimer timer = RequestTimer.start(configuration.getS3RequestListener(), method, path, query, headers, attempt);
+        final int chunkSize = configuration.getS3ChunkSize();
+        addPayloadHeaders(configuration.getS3PayloadMode(), chunkSize);
+        addSignatureHeader();
+        final S3BufferPool pool = configuration.getS3BufferPool();
+        if (timer == null) return checkChecksum(checkStatus(configuration.getS3Transport().send(method, newURI(), headers,
+            newContent(chunkSize, pool), newContentLength(chunkSize), configuration.getS3ConnectTimeout(), configuration.getS3ReadTimeout())), pool);
+
+        timer.signed();
+        final S3Response response;
+        try {
+            response = configuration.getS3Transport().send(method, newURI(), headers, timer.measureRequestBody(newContent(chunkSize, pool)),
+                newContentLength(chunkSize), configuration.getS3ConnectTimeout(), configuration.getS3ReadTimeout());
+        } catch (IOException e) {
+            timer.failed(0, e);
+            throw e;
+        }
+        try {
+            return checkChecksum(timer.responded(checkStatus(response)), pool);
         } catch (IOException e) {
-            connection.disconnect();
+            timer.failed(response.statusCode(), e);
             throw e;
         }
+    }
+
+    private S3Response checkStatus(final S3Response response) throws IOException {
+        if (!isExpected(response.statusCode())) {
+            try (response) {
+                throw parseErrorResponse(response.statusCode(), response.body());
+            }
+        }
+        return response;
+    }
 
-        return connection;
+    private S3Response checkChecksum(final S3Response response, final S3BufferPool pool) {
+        return verify == null ? response : verifying(response, verify, pool);
     }
 
-    private URL newURL() throws MalformedURLException {
+    /**
+     * Signs the request on the calling thread and sends it without waiting for the response. The
+     * future completes with the fully received response, or exceptionally with an S3Exception when
+     * the call was not successful. Retries follow the retry policy and wait without blocking a
+     * thread. The concurrency limiter only applies to blocking calls.
+     */
+    public CompletableFuture<BufferedS3Response> executeAsync(final S3ClientConfiguration configuration) {
+        return executeAsync(configuration, 1);
+    }
+
+    private CompletableFuture<BufferedS3Response> executeAsync(final S3ClientConfiguration configuration, final int attempt) {
+        return sendAsync(configuration, attempt).handle((response, e) -> {
+            if (e == null) return CompletableFuture.completedFuture(response);
+            final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (!(cause instanceof IOException) || !isReplayable()) return CompletableFuture.<BufferedS3Response>failedFuture(cause);
+
+            final long delay = configuration.getS3RetryPolicy().nextDelayMillis(attempt, isIdempotent(), (IOException) cause);
+            if (delay < 0) return CompletableFuture.<BufferedS3Response>failedFuture(cause);
+            final Executor delayed = CompletableFuture.delayedExecutor(delay, MILLISECONDS, configuration.getS3Executor());
+            return CompletableFuture.runAsync(() -> {}, delayed).thenCompose(ignored -> executeAsync(configuration, attempt + 1));
+        }).thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<BufferedS3Response> sendAsync(final S3ClientConfiguration configuration, final int attempt) {
+        final RequestTimer timer = RequestTimer.start(configuration.getS3RequestListener(), method, path, query, headers, attempt);
+        final int chunkSize = configuration.getS3ChunkSize();
+        addPayloadHeaders(configuration.getS3PayloadMode(), chunkSize);
+        addSignatureHeader();
+        if (timer != null) timer.signed();
+
+        final S3BufferPool pool = configuration.getS3BufferPool();
+        final InputStream content = timer == null ? newContent(chunkSize, pool) : timer.measureRequestBody(newContent(chunkSize, pool));
+        final CompletableFuture<BufferedS3Response> result = configuration.getS3Transport().sendAsync(method, newURI(), headers,
+                content, newContentLength(chunkSize), configuration.getS3ConnectTimeout(), configuration.getS3ReadTimeout(),
+                configuration.getS3Executor(), pool)
+            .thenApply(response -> {
+                if (!isExpected(response.statusCode()))
+                    throw new CompletionException(parseErrorResponse(response.statusCode(), new ByteArrayInputStream(response.bytes())));
+                if (verify != null && response.statusCode() == 200) {
+                    try {
+                        ChecksumVerifyingResponse.verify(verify, response.header(verify.checksumHeader()), response.bytes());
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }
+                return response;
+            });
+        if (timer == null) return result;
+        return result.whenComplete((response, e) -> {
+            final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            final int statusCode = response != null ? response.statusCode()
+                : cause instanceof S3Exception ? ((S3Exception) cause).statusCode : 0;
+            timer.completedAsync(statusCode, cause, response == null ? 0 : response.bytes().length);
+        });
+    }
+
+    /**
+     * A 304 Not Modified is the answer to a conditional request when the cached copy is still
+     * current, so it is only an error when no condition was sent.
+     */
+    private boolean isExpected(final int statusCode) {
+        return isSuccessful(statusCode) || isNotModified(statusCode) && headers.containsKey("If-None-Match");
+    }
+
+    // A buffer body can be sent again, a stream has been consumed by the first attempt
+    private boolean isReplayable() {
+        return stream == null;
+    }
+
+    private boolean isIdempotent() {
+        return idempotent != null ? idempotent : !"POST".equals(method);
+    }
+
+    private static void sleep(final long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    private InputStream newContent(final int chunkSize, final S3BufferPool pool) {
+        if (stream == null) return hasBody() ? new ByteBufferInputStream(body, pool) : null;
+        if (trailer != null) return new ChecksumTrailerInputStream(stream, streamLength, chunkSize, trailer);
+        if (UNSIGNED_PAYLOAD.equals(payloadHash)) return stream;
+        return new ChunkSigningInputStream(stream, streamLength, chunkSize, dateTime, scope, signKey, signature);
+    }
+
+    private long newContentLength(final int chunkSize) {
+        if (stream == null) return body.remaining();
+        if (trailer != null) return ChecksumTrailerInputStream.toEncodedLength(streamLength, chunkSize, trailer);
+        if (UNSIGNED_PAYLOAD.equals(payloadHash)) return streamLength;
+        return ChunkSigningInputStream.toEncodedLength(streamLength, chunkSize);
+    }
+
+    private boolean hasBody() {
+        return body.hasRemaining();
+    }
+
+    private URI newURI() {
         final String portPart = port == -1 ? "" : ":" + port;
-        final String url = protocol + "://" + host + portPart + path + (query == null ? "" : "?" + query);
-        return new URL(url);
+        return URI.create(protocol + "://" + host + portPart + path + (query == null ? "" : "?" + query));
+    }
+
+    /**
+     * Works out how the body is sent and what goes in x-amz-content-sha256. This happens on the
+     * first attempt only, a retry sends the same body and reuses the hash instead of computing it
+     * again. Only object and part uploads get a checksum, whole object GETs ask for one.
+     */
+    private void addPayloadHeaders(final S3PayloadMode mode, final int chunkSize) {
+        if (payloadHash != null) return;
+
+        final boolean checksummed = mode.hasChecksum() && "PUT".equals(method) && (stream != null || hasBody());
+        if (mode.hasChecksum() && "GET".equals(method) && query == null) {
+            header("x-amz-checksum-mode", "ENABLED");
+            verify = mode;
+        }
+        if (stream != null && checksummed) {
+            trailer = mode;
+            header("Content-Encoding", "aws-chunked");
+            header("Content-Length", String.valueOf(newContentLength(chunkSize)));
+            header("x-amz-decoded-content-length", String.valueOf(streamLength));
+            header("x-amz-trailer", mode.checksumHeader());
+            payloadHash = STREAMING_UNSIGNED_TRAILER;
+        } else if (stream != null && mode == S3PayloadMode.UNSIGNED) {
+            header("Content-Length", String.valueOf(streamLength));
+            payloadHash = UNSIGNED_PAYLOAD;
+        } else if (stream != null) {
+            header("Content-Encoding", "aws-chunked");
+            header("Content-Length", String.valueOf(newContentLength(chunkSize)));
+            header("x-amz-decoded-content-length", String.valueOf(streamLength));
+            payloadHash = STREAMING_PAYLOAD;
+        } else if (checksummed) {
+            header(mode.checksumHeader(), mode.checksum(body));
+            payloadHash = UNSIGNED_PAYLOAD;
+        } else {
+            payloadHash = mode == S3PayloadMode.UNSIGNED ? UNSIGNED_PAYLOAD : hashPayload(body);
+        }
     }
 
     /**
@@ -102,64 +333,59 @@ public final class S3Request {
      * https://docs.aws.amazon.com/AmazonS3/latest/API/sigv4-auth-using-authorization-header.html
      */
     private void addSignatureHeader() {
+        // A retry signs again, the old signature must not end up in the signed headers
+        headers.remove("Authorization");
         final Instant now = clock.instant();
         final String date = toShortDate(now);
-        final String dateTime = toIso8601(now);
+        dateTime = toIso8601(now);
+        scope = toScope(date, region);
 
         header("Host", newHostHeader());
         header("x-amz-date", dateTime);
-        header("x-amz-content-sha256", encodeHex(sha256(body)));
+        header("x-amz-content-sha256", payloadHash);
 
-        final String canonical = encodeHex(sha256(toCanonicalRequest()));
-        final String signData = "AWS4-HMAC-SHA256" + "\n" + dateTime + "\n" + date + "/" + region + "/s3/aws4_request" + "\n" + canonical;
-        final byte[] signKey = hmacSha256("aws4_request", hmacSha256("s3", hmacSha256(region, hmacSha256(date, "AWS4" + secretKey))));
+        final var canonicalHeaders = toCanonicalHeaders(headers);
+        final String signedHeaders = join(";", canonicalHeaders.keySet());
+        signKey = toSigningKey(accessKey, secretKey, date, region);
+        signature = signRequest(signKey, dateTime, scope, method, path, toCanonicalQuery(query),
+            canonicalHeaders, signedHeaders, headers.get("x-amz-content-sha256"));
 
-        final String authHeaderContent = "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" +
-                date + "/" + region + "/s3/aws4_request,SignedHeaders=" + newSignedHeaders() +
-                ",Signature=" + encodeHex(hmacSha256(signData, signKey));
-        header("Authorization", authHeaderContent);
+        header("Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope +
+            ",SignedHeaders=" + signedHeaders + ",Signature=" + signature);
     }
 
-    private Map<String, String> getCanonicalHeaders() {
-        final var map = new TreeMap<String, String>();
-        for (final var entry : headers.entrySet()) {
-            final String value = join(";", entry.getValue()).replaceAll(" +", " ");
-            map.put(entry.getKey().toLowerCase().trim(), value);
-        }
-        return map;
-    }
+    /**
+     * Builds a URL that carries the signature in its query string, so whoever holds it can make
+     * this request without credentials until it expires. The payload is not signed. The headers
+     * set on this request are, and must be sent along with the same values.
+     * https://docs.aws.amazon.com/AmazonS3/latest/API/sigv4-query-string-auth.html
+     */
+    public URI presign(final Duration expiry) {
+        final long seconds = expiry.toSeconds();
+        if (seconds < 1 || seconds > MAX_PRESIGN_SECONDS)
+            throw new IllegalArgumentException("Expiry must be between 1 second and 7 days");
 
-    private static Map<String, String> remapHeaders(final Map<String, List<String>> headers) {
-        final var map = new TreeMap<String, String>();
-        for (final var header : headers.entrySet()) {
-            map.put(header.getKey(), join(";", header.getValue()));
-        }
-        return map;
+        final Instant now = clock.instant();
+        final String date = toShortDate(now);
+        final String dateTime = toIso8601(now);
+        final String scope = toScope(date, region);
+        header("Host", newHostHeader());
+
+        final var canonicalHeaders = toCanonicalHeaders(headers);
+        final String signedHeaders = join(";", canonicalHeaders.keySet());
+        final String presignQuery = (query == null || query.isEmpty() ? "" : query + "&")
+            + "X-Amz-Algorithm=" + ALGORITHM
+            + "&X-Amz-Credential=" + encodeURI(accessKey + "/" + scope)
+            + "&X-Amz-Date=" + dateTime
+            + "&X-Amz-Expires=" + seconds
+            + "&X-Amz-SignedHeaders=" + encodeURI(signedHeaders);
+        final String signature = signRequest(toSigningKey(accessKey, secretKey, date, region), dateTime, scope,
+            method, path, toCanonicalQuery(presignQuery), canonicalHeaders, signedHeaders, UNSIGNED_PAYLOAD);
+        return URI.create(protocol + "://" + newHostHeader() + path + "?" + presignQuery + "&X-Amz-Signature=" + signature);
     }
 
     private String newHostHeader() {
         return port == -1 ? host : host + ":" + port;
     }
 
-    private String newSignedHeaders() {
-        return join(";", getCanonicalHeaders().keySet());
-    }
-
-    private String toCanonicalRequest() {
-        final String queryPart = query != null ? query : "";
-        final var canonicalHeaders = getCanonicalHeaders();
-        return method + "\n" + path + "\n" + queryPart + "\n" +
-            toCanonicalHeaderList(canonicalHeaders) + "\n" +
-            join(";", canonicalHeaders.keySet()) + "\n" +
-            encodeHex(sha256(body));
-    }
-
-    private static String toCanonicalHeaderList(final Map<String, String> headers) {
-        final var builder = new StringBuilder();
-        for (final var header : headers.entrySet()) {
-            builder.append(header.getKey()).append(":").append(header.getValue()).append("\n");
-        }
-        return builder.toString();
-    }
-
 }
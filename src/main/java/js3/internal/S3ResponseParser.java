@@ -1,82 +1,301 @@
 package js3.internal;
 
+import js3.S3Exception;
+import js3.model.S3DeleteError;
 import js3.model.S3ObjectMetaData;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.ByteArrayInputStream;
+import js3.model.S3Part;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.Consumer;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_DOCUMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
 
+/**
+ * Pull parsers for the S3 xml responses. They read straight from the response stream and hand
+ * every entry to the caller as soon as it is complete, no document is built and the raw bytes are
+ * never buffered.
+ */
 public enum S3ResponseParser {;
 
-    public static Document toXmlDocument(final byte[] xml) throws IOException {
-        try (final InputStream inputStream = new ByteArrayInputStream(xml)) {
-            final Document document = DocumentBuilderFactory.newInstance()
-                .newDocumentBuilder().parse(inputStream);
-            document.normalize();
-            return document;
-        } catch (ParserConfigurationException | SAXException e) {
-            throw new IOException("Unable to parse aws s3 xml ", e);
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+
+    /**
+     * Parses a ListObjectsV2 page.
+     * @return the continuation token for the next page, or null when this was the last page.
+     */
+    public static String parseObjectsList(final InputStream xml, final Consumer<S3ObjectMetaData> objects,
+                                          final Consumer<String> commonPrefixes) throws IOException {
+        /*
+        xml section describing the paging looks like
+        <NextContinuationToken>14A3Bj7/8L49hvCZhqecpzT5OMIu7FwVz483Lmh3zo2HCC0JjlHwTWYZIoYV4+Ao1</NextContinuationToken>
+        <KeyCount>1000</KeyCount>
+        <MaxKeys>1000</MaxKeys>
+        <IsTruncated>true</IsTruncated>
+        */
+        final XMLStreamReader reader = newReader(xml);
+        try {
+            boolean isTruncated = false;
+            String nextContinuationToken = null;
+            while (nextChildOf(reader)) {
+                switch (reader.getLocalName()) {
+                    case "Contents" -> objects.accept(readContents(reader));
+                    case "CommonPrefixes" -> readCommonPrefixes(reader, commonPrefixes);
+                    case "IsTruncated" -> isTruncated = Boolean.parseBoolean(reader.getElementText().trim());
+                    case "NextContinuationToken" -> nextContinuationToken = reader.getElementText();
+                    default -> skipElement(reader);
+                }
+            }
+            return isTruncated ? nextContinuationToken : null;
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("Unable to parse aws s3 xml", e);
+        } finally {
+            close(reader);
         }
     }
 
-    public static List<String> toBucketsList(final Document s3XmlDocument) {
-        final NodeList elements = s3XmlDocument.getDocumentElement().getElementsByTagName("Buckets").item(0).getChildNodes();
-        final List<String> bucketNames = new ArrayList<>(elements.getLength());
-        for (int i = 0; i < elements.getLength(); i++) {
-            final Element element = (Element) elements.item(i);
+    /**
+     * Parses a ListBuckets page.
+     * @return the continuation token for the next page, or null when this was the last page.
+     */
+    public static String parseBucketsList(final InputStream xml, final Consumer<String> bucketNames) throws IOException {
+        final XMLStreamReader reader = newReader(xml);
+        try {
+            String continuationToken = null;
+            while (nextChildOf(reader)) {
+                switch (reader.getLocalName()) {
+                    case "Buckets" -> {
+                        while (nextChildOf(reader)) {
+                            while (nextChildOf(reader)) {
+                                if ("Name".equals(reader.getLocalName())) bucketNames.accept(reader.getElementText());
+                                else skipElement(reader);
+                            }
+                        }
+                    }
+                    case "ContinuationToken" -> continuationToken = reader.getElementText();
+                    default -> skipElement(reader);
+                }
+            }
+            return continuationToken;
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("Unable to parse aws s3 xml", e);
+        } finally {
+            close(reader);
+        }
+    }
 
-            bucketNames.add(element.getElementsByTagName("Name").item(0).getTextContent());
+    public static String parseUploadId(final InputStream xml) throws IOException {
+        final XMLStreamReader reader = newReader(xml);
+        try {
+            while (nextChildOf(reader)) {
+                if ("UploadId".equals(reader.getLocalName())) return reader.getElementText();
+                skipElement(reader);
+            }
+            return null;
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("Unable to parse aws s3 xml", e);
+        } finally {
+            close(reader);
         }
-        return bucketNames;
     }
 
-    public static List<S3ObjectMetaData> toObjectsList(final Document s3XmlDocument) {
-        final NodeList elements = s3XmlDocument.getDocumentElement().getElementsByTagName("Contents");
-        final List<S3ObjectMetaData> objectList = new ArrayList<>(elements.getLength());
-        for (int i = 0; i < elements.getLength(); i++) {
-            final Element element = (Element) elements.item(i);
+    /**
+     * Parses a CopyObject or UploadPartCopy result. A copy can fail after the server has already
+     * sent a 200, the Error document in the body then becomes an exception.
+     * @return the ETag of the copy.
+     */
+    public static String parseCopyResult(final InputStream xml) throws IOException {
+        return parseCopyResult(xml, 0).etag;
+    }
 
-            final String key = element.getElementsByTagName("Key").item(0).getTextContent();
-            final String etag = element.getElementsByTagName("ETag").item(0).getTextContent();
-            final Long size = Long.valueOf(element.getElementsByTagName("Size").item(0).getTextContent());
-            final String lastModified = element.getElementsByTagName("LastModified").item(0).getTextContent();
+    /**
+     * Parses the result of an UploadPartCopy, which has the same shape as a copy result and also
+     * holds the checksum of the part when the upload has a checksum algorithm.
+     */
+    public static S3Part parseCopyResult(final InputStream xml, final int partNumber) throws IOException {
+        final XMLStreamReader reader = newReader(xml);
+        try {
+            reader.nextTag();
+            final boolean failed = "Error".equals(reader.getLocalName());
 
-            objectList.add(new S3ObjectMetaData(key, etag, size, lastModified, null, null));
+            String etag = null, checksum = null, code = null, message = null;
+            while (nextChildOf(reader)) {
+                switch (reader.getLocalName()) {
+                    case "ETag" -> etag = reader.getElementText();
+                    case "ChecksumCRC32C", "ChecksumCRC32" -> checksum = reader.getElementText();
+                    case "Code" -> code = reader.getElementText();
+                    case "Message" -> message = reader.getElementText();
+                    default -> skipElement(reader);
+                }
+            }
+            if (failed) throw new IOException("Failed to copy object, " + code + ": " + message);
+            return new S3Part(partNumber, etag, checksum);
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("Unable to parse aws s3 xml", e);
+        } finally {
+            close(reader);
         }
-        return objectList;
     }
 
-    public static String getNextContinuationToken(final Document s3XmlDocument) {
-        /*
-        xml section describing this looks like
-        <NextContinuationToken>14A3Bj7/8L49hvCZhqecpzT5OMIu7FwVz483Lmh3zo2HCC0JjlHwTWYZIoYV4+Ao1</NextContinuationToken>
-        <KeyCount>1000</KeyCount>
-        <MaxKeys>1000</MaxKeys>
-        <IsTruncated>true</IsTruncated>
-        */
-        final Element documentElement = s3XmlDocument.getDocumentElement();
-        final String isTruncated = getSimpleXmlItemContent(documentElement, "IsTruncated");
-        final String nextContinuationToken = getSimpleXmlItemContent(documentElement, "NextContinuationToken");
-        if (Boolean.valueOf(isTruncated).equals(true)) {
-            return nextContinuationToken;
+    /**
+     * Parses a DeleteObjects result. Only the keys that failed are passed on, in quiet mode the
+     * server does not list the deleted keys anyway.
+     */
+    public static void parseDeleteErrors(final InputStream xml, final Consumer<S3DeleteError> errors) throws IOException {
+        final XMLStreamReader reader = newReader(xml);
+        try {
+            reader.nextTag();
+            if ("Error".equals(reader.getLocalName())) throw new IOException("Delete request failed");
+
+            while (nextChildOf(reader)) {
+                if ("Error".equals(reader.getLocalName())) errors.accept(readDeleteError(reader));
+                else skipElement(reader);
+            }
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("Unable to parse aws s3 xml", e);
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * Some calls, like CompleteMultipartUpload, can fail after the server has already sent a 200.
+     * The failure is then reported as an Error document in the body.
+     * @return the error code and message, or null when the document is not an Error.
+     */
+    public static String parseErrorMessage(final InputStream xml) throws IOException {
+        final XMLStreamReader reader = newReader(xml);
+        try {
+            reader.nextTag();
+            if (!"Error".equals(reader.getLocalName())) return null;
+
+            String code = null, message = null;
+            while (nextChildOf(reader)) {
+                switch (reader.getLocalName()) {
+                    case "Code" -> code = reader.getElementText();
+                    case "Message" -> message = reader.getElementText();
+                    default -> skipElement(reader);
+                }
+            }
+            return code + ": " + message;
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("Unable to parse aws s3 xml", e);
+        } finally {
+            close(reader);
         }
-        return null;
     }
 
-    private static String getSimpleXmlItemContent(final Element parentElement, final String item) {
-        NodeList foundElements = parentElement.getElementsByTagName(item);
-        if (foundElements.getLength() > 0) {
-            return foundElements.item(0).getTextContent();
+    /**
+     * Turns a failed response into an exception, with the error code when the body is an Error
+     * document. Bodies that can not be parsed, like the empty body of a HEAD, only give the status.
+     */
+    public static S3Exception parseErrorResponse(final int statusCode, final InputStream xml) {
+        try {
+            final XMLStreamReader reader = newReader(xml);
+            try {
+                reader.nextTag();
+                if (!"Error".equals(reader.getLocalName())) return new S3Exception(statusCode);
+
+                String code = null, message = null;
+                while (nextChildOf(reader)) {
+                    switch (reader.getLocalName()) {
+                        case "Code" -> code = reader.getElementText();
+                        case "Message" -> message = reader.getElementText();
+                        default -> skipElement(reader);
+                    }
+                }
+                return new S3Exception(statusCode, code, message);
+            } finally {
+                close(reader);
+            }
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            return new S3Exception(statusCode);
+        }
+    }
+
+    private static S3ObjectMetaData readContents(final XMLStreamReader reader) throws XMLStreamException {
+        String key = null, etag = null, lastModified = null;
+        Long size = null;
+        while (nextChildOf(reader)) {
+            switch (reader.getLocalName()) {
+                case "Key" -> key = reader.getElementText();
+                case "ETag" -> etag = reader.getElementText();
+                case "Size" -> size = Long.valueOf(reader.getElementText().trim());
+                case "LastModified" -> lastModified = reader.getElementText();
+                default -> skipElement(reader);
+            }
+        }
+        return new S3ObjectMetaData(key, etag, size, lastModified, null, null);
+    }
+
+    private static S3DeleteError readDeleteError(final XMLStreamReader reader) throws XMLStreamException {
+        String key = null, code = null, message = null;
+        while (nextChildOf(reader)) {
+            switch (reader.getLocalName()) {
+                case "Key" -> key = reader.getElementText();
+                case "Code" -> code = reader.getElementText();
+                case "Message" -> message = reader.getElementText();
+                default -> skipElement(reader);
+            }
+        }
+        return new S3DeleteError(key, code, message);
+    }
+
+    private static void readCommonPrefixes(final XMLStreamReader reader, final Consumer<String> commonPrefixes) throws XMLStreamException {
+        while (nextChildOf(reader)) {
+            if ("Prefix".equals(reader.getLocalName())) commonPrefixes.accept(reader.getElementText());
+            else skipElement(reader);
         }
-        return null;
+    }
+
+    /**
+     * Moves to the start of the next child element of the current element. Returns false when the
+     * current element ends instead. Every child must be consumed completely before the next call.
+     */
+    private static boolean nextChildOf(final XMLStreamReader reader) throws XMLStreamException {
+        if (reader.getEventType() == START_DOCUMENT) reader.nextTag();
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == START_ELEMENT) return true;
+            if (event == END_ELEMENT) return false;
+        }
+        return false;
+    }
+
+    private static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+        int level = 1;
+        while (level > 0) {
+            final int event = reader.next();
+            if (event == START_ELEMENT) level++;
+            else if (event == END_ELEMENT) level--;
+        }
+    }
+
+    private static XMLStreamReader newReader(final InputStream xml) throws IOException {
+        try {
+            return XML_INPUT_FACTORY.createXMLStreamReader(xml);
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to parse aws s3 xml", e);
+        }
+    }
+
+    private static void close(final XMLStreamReader reader) {
+        try {
+            reader.close();
+        } catch (XMLStreamException ignored) {}
+    }
+
+    private static XMLInputFactory newXmlInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
     }
 
 }
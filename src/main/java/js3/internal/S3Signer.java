@@ -0,0 +1,246 @@
+package js3.internal;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.DigestException;
+import java.security.InvalidKeyException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static js3.internal.Constants.EMPTY_SHA256;
+import static js3.util.Crypto.hmacSha256;
+import static js3.util.Crypto.newHmacSha256;
+import static js3.util.Crypto.newSha256;
+
+/**
+ * The AWS signature version 4 calculations. The signing key only changes once a day, so it is
+ * derived once per credentials, date and region and then cached. Every thread keeps its own Mac,
+ * digest and buffers, which means a signature costs two hashes and almost no garbage.
+ * https://docs.aws.amazon.com/general/latest/gr/sigv4-add-signature-to-request.html
+ */
+public enum S3Signer {;
+
+    public static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    public static final String SERVICE = "s3";
+
+    private static final int MAX_CACHED_KEYS = 256;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final Map<String, SigningKey> SIGNING_KEYS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<ThreadState> STATE = ThreadLocal.withInitial(ThreadState::new);
+
+    public static String toScope(final String date, final String region) {
+        return date + "/" + region + "/" + SERVICE + "/aws4_request";
+    }
+
+    public static byte[] toSigningKey(final String accessKey, final String secretKey, final String date, final String region) {
+        final String cacheKey = accessKey + "/" + date + "/" + region;
+        final SigningKey cached = SIGNING_KEYS.get(cacheKey);
+        if (cached != null && cached.secretKey.equals(secretKey)) return cached.key;
+
+        final byte[] key = hmacSha256("aws4_request", hmacSha256(SERVICE, hmacSha256(region, hmacSha256(date, "AWS4" + secretKey))));
+        // Keys from previous days are never used again, dropping everything now and then keeps the cache small
+        if (SIGNING_KEYS.size() >= MAX_CACHED_KEYS) SIGNING_KEYS.clear();
+        SIGNING_KEYS.put(cacheKey, new SigningKey(secretKey, key));
+        return key;
+    }
+
+    /**
+     * Signs a request whose headers have already been put in canonical form, see toCanonicalHeaders.
+     */
+    public static String signRequest(final byte[] signingKey, final String dateTime, final String scope,
+                                     final String method, final String path, final String canonicalQuery,
+                                     final SortedMap<String, String> canonicalHeaders, final String signedHeaders,
+                                     final String payloadHash) {
+        final ThreadState state = STATE.get();
+
+        final StringBuilder canonical = state.newBuilder();
+        canonical.append(method).append('\n').append(path).append('\n').append(canonicalQuery).append('\n');
+        for (final var header : canonicalHeaders.entrySet()) {
+            canonical.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+        }
+        canonical.append('\n').append(signedHeaders).append('\n').append(payloadHash);
+        state.sha256(canonical);
+
+        final StringBuilder stringToSign = state.newBuilder();
+        stringToSign.append(ALGORITHM).append('\n').append(dateTime).append('\n').append(scope).append('\n');
+        appendHex(stringToSign, state.digest);
+        return state.sign(signingKey, stringToSign);
+    }
+
+    /**
+     * Signs one chunk of an aws-chunked body, chaining on the signature of the previous chunk.
+     * https://docs.aws.amazon.com/AmazonS3/latest/API/sigv4-streaming.html
+     */
+    public static String signChunk(final byte[] signingKey, final String dateTime, final String scope,
+                                   final String previousSignature, final byte[] chunk, final int offset, final int length) {
+        final ThreadState state = STATE.get();
+        state.sha256(chunk, offset, length);
+
+        final StringBuilder stringToSign = state.newBuilder();
+        stringToSign.append(ALGORITHM).append("-PAYLOAD\n").append(dateTime).append('\n').append(scope).append('\n')
+            .append(previousSignature).append('\n').append(EMPTY_SHA256).append('\n');
+        appendHex(stringToSign, state.digest);
+        return state.sign(signingKey, stringToSign);
+    }
+
+    /**
+     * Returns the lower-case hex SHA-256 of the payload.
+     */
+    public static String hashPayload(final byte[] data) {
+        final ThreadState state = STATE.get();
+        state.sha256(data, 0, data.length);
+        final StringBuilder builder = state.newBuilder();
+        appendHex(builder, state.digest);
+        return builder.toString();
+    }
+
+    /**
+     * Hashes the remaining bytes of the buffer without moving its position. Direct and mapped
+     * buffers are hashed where they are.
+     */
+    public static String hashPayload(final ByteBuffer data) {
+        final ThreadState state = STATE.get();
+        state.sha256(data.duplicate());
+        final StringBuilder builder = state.newBuilder();
+        appendHex(builder, state.digest);
+        return builder.toString();
+    }
+
+    /**
+     * Lower-cases and trims the names and collapses runs of spaces in the values.
+     */
+    public static SortedMap<String, String> toCanonicalHeaders(final Map<String, String> headers) {
+        final var canonical = new TreeMap<String, String>();
+        for (final var header : headers.entrySet()) {
+            canonical.put(header.getKey().toLowerCase().trim(), toCanonicalValue(header.getValue()));
+        }
+        return canonical;
+    }
+
+    /**
+     * The canonical query string lists every parameter as name=value, sorted by name. Callers are
+     * expected to have encoded the names and values already.
+     */
+    public static String toCanonicalQuery(final String query) {
+        if (query == null || query.isEmpty()) return "";
+        final var params = new TreeMap<String, String>();
+        for (final String param : query.split("&")) {
+            final int index = param.indexOf('=');
+            if (index == -1) params.put(param, "");
+            else params.put(param.substring(0, index), param.substring(index + 1));
+        }
+        final var builder = new StringBuilder(query.length() + params.size());
+        for (final var param : params.entrySet()) {
+            if (builder.length() > 0) builder.append('&');
+            builder.append(param.getKey()).append('=').append(param.getValue());
+        }
+        return builder.toString();
+    }
+
+    private static String toCanonicalValue(final String value) {
+        final String trimmed = value.trim();
+        if (trimmed.indexOf("  ") == -1) return trimmed;
+
+        final var builder = new StringBuilder(trimmed.length());
+        for (int i = 0; i < trimmed.length(); i++) {
+            final char ch = trimmed.charAt(i);
+            if (ch != ' ' || trimmed.charAt(i - 1) != ' ') builder.append(ch);
+        }
+        return builder.toString();
+    }
+
+    private static void appendHex(final StringBuilder builder, final byte[] data) {
+        for (final byte b : data) {
+            builder.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+        }
+    }
+
+    private static final class SigningKey {
+        private final String secretKey;
+        private final byte[] key;
+
+        private SigningKey(final String secretKey, final byte[] key) {
+            this.secretKey = secretKey;
+            this.key = key;
+        }
+    }
+
+    private static final class ThreadState {
+        private final Mac mac = newHmacSha256();
+        private final MessageDigest sha256 = newSha256();
+        private final StringBuilder builder = new StringBuilder(1024);
+        private final byte[] digest = new byte[32];
+        private byte[] bytes = new byte[1024];
+        private byte[] macKey;
+
+        private StringBuilder newBuilder() {
+            builder.setLength(0);
+            return builder;
+        }
+
+        private void sha256(final byte[] data, final int offset, final int length) {
+            sha256.update(data, offset, length);
+            try {
+                sha256.digest(digest, 0, digest.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void sha256(final ByteBuffer data) {
+            sha256.update(data);
+            try {
+                sha256.digest(digest, 0, digest.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void sha256(final CharSequence text) {
+            sha256(bytes, 0, toBytes(text));
+        }
+
+        private String sign(final byte[] key, final CharSequence text) {
+            try {
+                // The Mac keeps its key after doFinal, so it only needs a new init when the key changes
+                if (macKey != key) {
+                    mac.init(new SecretKeySpec(key, "HmacSHA256"));
+                    macKey = key;
+                }
+                mac.update(bytes, 0, toBytes(text));
+                mac.doFinal(digest, 0);
+            } catch (InvalidKeyException | ShortBufferException e) {
+                throw new IllegalStateException(e);
+            }
+            final StringBuilder signature = newBuilder();
+            appendHex(signature, digest);
+            return signature.toString();
+        }
+
+        private int toBytes(final CharSequence text) {
+            final int length = text.length();
+            if (bytes.length < length) bytes = new byte[Math.max(length, bytes.length * 2)];
+            for (int i = 0; i < length; i++) {
+                final char ch = text.charAt(i);
+                if (ch >= 0x80) return toBytesSlow(text);
+                bytes[i] = (byte) ch;
+            }
+            return length;
+        }
+
+        private int toBytesSlow(final CharSequence text) {
+            final byte[] encoded = text.toString().getBytes(UTF_8);
+            if (bytes.length < encoded.length) bytes = new byte[encoded.length];
+            System.arraycopy(encoded, 0, bytes, 0, encoded.length);
+            return encoded.length;
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package js3.internal;
+
+import js3.S3Exception;
+import js3.transport.S3Response;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The records of a SelectObjectContent response as plain bytes. Records events are decoded as
+ * they are read, progress, stats and keep-alive events are dropped. The server reports failures
+ * that happen after the 200 as an error event, which is thrown as an S3Exception, and a response
+ * that stops without its End event is thrown as truncated, so a partial result never looks whole.
+ */
+public final class SelectRecordsInputStream extends InputStream {
+
+    private final S3Response response;
+    private final EventStreamReader reader;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean ended;
+
+    public SelectRecordsInputStream(final S3Response response) throws IOException {
+        this.response = response;
+        this.reader = new EventStreamReader(response.body());
+    }
+
+    public int read() throws IOException {
+        if (position == limit && !nextRecords()) return -1;
+        return buffer[position++] & 0xFF;
+    }
+
+    public int read(final byte[] b, final int offset, final int length) throws IOException {
+        if (length == 0) return 0;
+        if (position == limit && !nextRecords()) return -1;
+        final int count = Math.min(length, limit - position);
+        System.arraycopy(buffer, position, b, offset, count);
+        position += count;
+        return count;
+    }
+
+    public int available() {
+        return limit - position;
+    }
+
+    public void close() throws IOException {
+        response.close();
+    }
+
+    private boolean nextRecords() throws IOException {
+        while (!ended) {
+            final EventStreamReader.Message message = reader.next();
+            if (message == null) throw new EOFException("Select response ended without an End event");
+            if ("error".equals(message.header(":message-type")))
+                throw new S3Exception(response.statusCode(), message.header(":error-code"), message.header(":error-message"));
+
+            final String eventType = message.header(":event-type");
+            if ("End".equals(eventType)) ended = true;
+            else if ("Records".equals(eventType) && message.payloadLength > 0) {
+                buffer = message.buffer();
+                position = message.payloadOffset;
+                limit = message.payloadOffset + message.payloadLength;
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
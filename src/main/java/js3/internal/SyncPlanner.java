@@ -0,0 +1,240 @@
+package js3.internal;
+
+import js3.buffer.S3BufferPool;
+import js3.model.S3ObjectMetaData;
+import js3.model.S3SyncAction;
+import js3.model.S3SyncPlan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static js3.internal.Constants.BLOCK_SIZE;
+import static js3.model.S3SyncAction.Type.*;
+import static js3.util.Coding.encodeHex;
+import static js3.util.Crypto.newMd5;
+
+/**
+ * Works out what a directory sync has to transfer. Files and objects are matched by key, then
+ * compared by size first and by modification time second, both of which come for free from the
+ * directory walk and the listing. Only when the sizes match and the times disagree is the file
+ * hashed and compared to the ETag, and only when the ETag is a plain MD5, which it is not for
+ * multipart uploads and KMS encryption. An unchanged tree therefore costs a listing and a walk.
+ */
+public enum SyncPlanner {;
+
+    public static final String PARTIAL_SUFFIX = ".js3-partial";
+
+    public static final class LocalFile {
+        public final Path path;
+        public final long size;
+        public final Instant lastModified;
+
+        private LocalFile(final Path path, final long size, final Instant lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Turns a prefix into a directory-like prefix, so "backup" and "backup/" mean the same.
+     */
+    public static String toDirectoryPrefix(final String prefix) {
+        if (prefix == null || prefix.isEmpty()) return "";
+        return prefix.endsWith("/") ? prefix : prefix + "/";
+    }
+
+    /**
+     * Collects the regular files under the directory by the key they have under the prefix.
+     * Leftovers of interrupted downloads are not part of the tree. A missing directory is empty.
+     */
+    public static Map<String, LocalFile> listDirectory(final Path directory, final String prefix,
+                                                       final String... ignoredSuffixes) throws IOException {
+        final Map<String, LocalFile> files = new HashMap<>();
+        if (!Files.isDirectory(directory)) return files;
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                if (!attributes.isRegularFile()) return FileVisitResult.CONTINUE;
+                final String name = file.getFileName().toString();
+                for (final String suffix : ignoredSuffixes) if (name.endsWith(suffix)) return FileVisitResult.CONTINUE;
+
+                final String relative = directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                files.put(prefix + relative, new LocalFile(file, attributes.size(), attributes.lastModifiedTime().toInstant()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Maps a key to its file in the directory, or null for keys that have no place there: folder
+     * markers ending in a slash and keys that would resolve outside the directory.
+     */
+    public static Path toLocalPath(final Path directory, final String prefix, final String key) {
+        final String relative = key.substring(prefix.length());
+        if (relative.isEmpty() || relative.endsWith("/")) return null;
+        final Path root = directory.toAbsolutePath().normalize();
+        final Path path = root.resolve(relative.replace("/", directory.getFileSystem().getSeparator())).normalize();
+        return path.startsWith(root) && !path.equals(root) ? path : null;
+    }
+
+    public static S3SyncPlan planUpload(final Path directory, final String bucket, final String prefix,
+                                        final Map<String, LocalFile> files, final Map<String, S3ObjectMetaData> objects,
+                                        final boolean delete, final BoundedExecutor executor,
+                                        final S3BufferPool pool) throws IOException {
+        final var actions = new ArrayList<S3SyncAction>();
+        final var candidates = new LinkedHashMap<String, CompletableFuture<Boolean>>();
+        long unchanged = 0;
+        try {
+            for (final var entry : files.entrySet()) {
+                final String key = entry.getKey();
+                final LocalFile file = entry.getValue();
+                final S3ObjectMetaData object = objects.get(key);
+                final String reason;
+                if (object == null) reason = "new";
+                else if (object.size == null || object.size != file.size) reason = "size differs";
+                else if (isOlderOrSame(file.lastModified, parseInstant(object.lastModified))) {
+                    unchanged++;
+                    continue;
+                } else if (isPlainMd5(object.etag)) {
+                    candidates.put(key, executor.submit(() -> md5Hex(file.path, pool).equalsIgnoreCase(stripQuotes(object.etag))));
+                    continue;
+                } else reason = "modified";
+                actions.add(new S3SyncAction(UPLOAD, key, file.path, file.size, reason, null));
+            }
+            executor.awaitAll();
+        } catch (IOException | RuntimeException e) {
+            executor.drain();
+            throw e;
+        }
+        for (final var candidate : candidates.entrySet()) {
+            final LocalFile file = files.get(candidate.getKey());
+            if (candidate.getValue().join()) unchanged++;
+            else actions.add(new S3SyncAction(UPLOAD, candidate.getKey(), file.path, file.size, "content differs", null));
+        }
+        if (delete) {
+            for (final var object : objects.values()) {
+                if (files.containsKey(object.key)) continue;
+                actions.add(new S3SyncAction(DELETE_REMOTE, object.key, null, sizeOf(object), "not in directory", null));
+            }
+        }
+        actions.sort(Comparator.comparing(action -> action.key));
+        return new S3SyncPlan(S3SyncPlan.Direction.UPLOAD, directory, bucket, prefix, actions, unchanged);
+    }
+
+    public static S3SyncPlan planDownload(final Path directory, final String bucket, final String prefix,
+                                          final Map<String, LocalFile> files, final Map<String, S3ObjectMetaData> objects,
+                                          final boolean delete, final BoundedExecutor executor,
+                                          final S3BufferPool pool) throws IOException {
+        final var actions = new ArrayList<S3SyncAction>();
+        final var candidates = new LinkedHashMap<S3ObjectMetaData, CompletableFuture<Boolean>>();
+        final var wanted = new HashSet<String>();
+        long unchanged = 0;
+        try {
+            for (final S3ObjectMetaData object : objects.values()) {
+                final Path path = toLocalPath(directory, prefix, object.key);
+                if (path == null) continue;
+                wanted.add(object.key);
+
+                final LocalFile file = files.get(object.key);
+                final Instant lastModified = parseInstant(object.lastModified);
+                final String reason;
+                if (file == null) reason = "new";
+                else if (object.size == null || object.size != file.size) reason = "size differs";
+                else if (lastModified != null && isSameSecond(file.lastModified, lastModified)) {
+                    unchanged++;
+                    continue;
+                } else if (isPlainMd5(object.etag)) {
+                    candidates.put(object, executor.submit(() -> md5Hex(file.path, pool).equalsIgnoreCase(stripQuotes(object.etag))));
+                    continue;
+                } else reason = "modified";
+                actions.add(new S3SyncAction(DOWNLOAD, object.key, path, sizeOf(object), reason, lastModified));
+            }
+            executor.awaitAll();
+        } catch (IOException | RuntimeException e) {
+            executor.drain();
+            throw e;
+        }
+        for (final var candidate : candidates.entrySet()) {
+            final S3ObjectMetaData object = candidate.getKey();
+            if (candidate.getValue().join()) unchanged++;
+            else actions.add(new S3SyncAction(DOWNLOAD, object.key, toLocalPath(directory, prefix, object.key),
+                sizeOf(object), "content differs", parseInstant(object.lastModified)));
+        }
+        if (delete) {
+            for (final var entry : files.entrySet()) {
+                if (wanted.contains(entry.getKey())) continue;
+                final LocalFile file = entry.getValue();
+                actions.add(new S3SyncAction(DELETE_LOCAL, entry.getKey(), file.path, file.size, "not in bucket", null));
+            }
+        }
+        actions.sort(Comparator.comparing(action -> action.key));
+        return new S3SyncPlan(S3SyncPlan.Direction.DOWNLOAD, directory, bucket, prefix, actions, unchanged);
+    }
+
+    /**
+     * Single part uploads without KMS encryption have the MD5 of the content as ETag. Multipart
+     * ETags carry a dash and a part count and can not be compared to a file hash.
+     */
+    public static boolean isPlainMd5(final String etag) {
+        final String hash = stripQuotes(etag);
+        if (hash == null || hash.length() != 32) return false;
+        for (int i = 0; i < hash.length(); i++) {
+            if (Character.digit(hash.charAt(i), 16) == -1) return false;
+        }
+        return true;
+    }
+
+    public static String md5Hex(final Path file, final S3BufferPool pool) throws IOException {
+        final MessageDigest md5 = newMd5();
+        final byte[] buffer = pool.acquire(BLOCK_SIZE);
+        try (final InputStream in = Files.newInputStream(file)) {
+            int read; while ((read = in.read(buffer)) != -1) md5.update(buffer, 0, read);
+        } catch (NoSuchFileException e) {
+            // Deleted since the walk, it differs from the object either way
+            return "";
+        } finally {
+            pool.release(buffer);
+        }
+        return encodeHex(md5.digest());
+    }
+
+    private static boolean isOlderOrSame(final Instant local, final Instant remote) {
+        return remote != null && !local.truncatedTo(ChronoUnit.SECONDS).isAfter(remote.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    private static boolean isSameSecond(final Instant local, final Instant remote) {
+        return local.truncatedTo(ChronoUnit.SECONDS).equals(remote.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    private static Instant parseInstant(final String timestamp) {
+        if (timestamp == null) return null;
+        try {
+            return Instant.parse(timestamp);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String stripQuotes(final String etag) {
+        if (etag == null) return null;
+        return etag.length() > 1 && etag.startsWith("\"") && etag.endsWith("\"") ? etag.substring(1, etag.length() - 1) : etag;
+    }
+
+    private static long sizeOf(final S3ObjectMetaData object) {
+        return object.size == null ? 0 : object.size;
+    }
+
+}
@@ -0,0 +1,82 @@
+package js3.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of durations in the spirit of HdrHistogram. Values below 128 have a bucket
+ * of their own, above that every power of two is split in 64 linear buckets. The relative error of
+ * a reported value is therefore below 1.6% over the whole range of a long, at a fixed cost of
+ * about 30 KB per histogram. Recording is a handful of arithmetic operations and one atomic add.
+ */
+public final class LatencyHistogram {
+
+    private static final int LINEAR_BITS = 6;
+    private static final int LINEAR_BUCKETS = 1 << LINEAR_BITS;
+    private static final int BUCKETS = (64 - LINEAR_BITS) * LINEAR_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(toIndex(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax(final TimeUnit unit) {
+        return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public double getMean(final TimeUnit unit) {
+        final long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n / unit.toNanos(1);
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return the highest value equivalent to the value at the percentile, or 0 when empty.
+     */
+    public long getPercentile(final double percentile, final TimeUnit unit) {
+        final long n = count.sum();
+        if (n == 0) return 0;
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            seen += counts.get(index);
+            if (seen >= rank) return unit.convert(Math.min(toHighestValue(index), max.get()), TimeUnit.NANOSECONDS);
+        }
+        return getMax(unit);
+    }
+
+    public void reset() {
+        for (int index = 0; index < BUCKETS; index++) counts.set(index, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    private static int toIndex(final long value) {
+        if (value < 2 * LINEAR_BUCKETS) return (int) value;
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - LINEAR_BITS;
+        return shift * LINEAR_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long toHighestValue(final int index) {
+        if (index < 2 * LINEAR_BUCKETS) return index;
+        final int shift = index / LINEAR_BUCKETS - 1;
+        final long mantissa = index - (long) shift * LINEAR_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,87 @@
+package js3.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Aggregates the request metrics per operation: latency histograms for the whole attempt and for
+ * the time to first byte, counters for attempts, retries, failures and bytes, and a count per
+ * status code. Register it as the request listener, or combine it with others through
+ * S3RequestListener.of.
+ */
+public final class S3MetricsCollector implements S3RequestListener {
+
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    public void onRequestCompleted(final S3RequestMetrics metrics) {
+        operations.computeIfAbsent(metrics.operation, name -> new OperationStats()).record(metrics);
+    }
+
+    public Map<String, OperationStats> getOperations() {
+        return Collections.unmodifiableMap(operations);
+    }
+
+    public void reset() {
+        operations.clear();
+    }
+
+    /**
+     * A table with one line per operation, latencies in microseconds.
+     */
+    public String report() {
+        final var report = new StringBuilder(String.format("%-26s %9s %7s %7s %9s %9s %9s %9s %9s %12s %12s%n",
+            "operation", "attempts", "retries", "failed", "p50", "p90", "p99", "max", "ttfb p50", "bytes out", "bytes in"));
+        for (final var entry : new TreeMap<>(operations).entrySet()) {
+            final OperationStats stats = entry.getValue();
+            report.append(String.format("%-26s %9d %7d %7d %9d %9d %9d %9d %9d %12d %12d%n", entry.getKey(),
+                stats.attempts.sum(), stats.retries.sum(), stats.failures.sum(),
+                stats.latency.getPercentile(50, MICROSECONDS), stats.latency.getPercentile(90, MICROSECONDS),
+                stats.latency.getPercentile(99, MICROSECONDS), stats.latency.getMax(MICROSECONDS),
+                stats.firstByte.getPercentile(50, MICROSECONDS), stats.requestBytes.sum(), stats.responseBytes.sum()));
+        }
+        return report.toString();
+    }
+
+    public static final class OperationStats {
+
+        public final LatencyHistogram latency = new LatencyHistogram();
+        public final LatencyHistogram firstByte = new LatencyHistogram();
+        public final LongAdder attempts = new LongAdder();
+        public final LongAdder retries = new LongAdder();
+        public final LongAdder failures = new LongAdder();
+        public final LongAdder requestBytes = new LongAdder();
+        public final LongAdder responseBytes = new LongAdder();
+        private final Map<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+
+        private void record(final S3RequestMetrics metrics) {
+            latency.record(metrics.totalNanos);
+            if (metrics.firstByteNanos >= 0) firstByte.record(metrics.firstByteNanos);
+            attempts.increment();
+            if (metrics.attempt > 1) retries.increment();
+            if (metrics.failure != null) failures.increment();
+            requestBytes.add(metrics.requestBytes);
+            responseBytes.add(metrics.responseBytes);
+            statusCodes.computeIfAbsent(metrics.statusCode, code -> new LongAdder()).increment();
+        }
+
+        /**
+         * The number of attempts per status code, 0 stands for attempts without a response.
+         */
+        public Map<Integer, Long> getStatusCodes() {
+            final var counts = new TreeMap<Integer, Long>();
+            statusCodes.forEach((code, count) -> counts.put(code, count.sum()));
+            return counts;
+        }
+
+        public long getLatency(final double percentile, final TimeUnit unit) {
+            return latency.getPercentile(percentile, unit);
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package js3.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for one attempt of an S3 request. Every attempt commits one while a
+ * recording has the event enabled, whether a request listener is configured or not. The event
+ * spans the whole attempt, from signing until the response is closed.
+ */
+@Name("js3.S3Request")
+@Label("S3 Request")
+@Category({"js3", "S3"})
+@Description("One attempt of an S3 request, with the time spent in every phase")
+public final class S3RequestEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    public String operation;
+    @Label("Method")
+    public String method;
+    @Label("Path")
+    public String path;
+    @Label("Attempt")
+    public int attempt;
+    @Label("Status Code")
+    public int statusCode;
+    @Label("Failure")
+    public String failure;
+    @Label("Request Bytes") @DataAmount
+    public long requestBytes;
+    @Label("Response Bytes") @DataAmount
+    public long responseBytes;
+    @Label("Signing") @Timespan
+    public long signNanos;
+    @Label("Connect") @Timespan
+    public long connectNanos;
+    @Label("Upload") @Timespan
+    public long uploadNanos;
+    @Label("Time To First Byte") @Timespan
+    public long firstByteNanos;
+    @Label("Body Read") @Timespan
+    public long bodyNanos;
+
+}
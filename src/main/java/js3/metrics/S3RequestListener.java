@@ -0,0 +1,23 @@
+package js3.metrics;
+
+import java.util.List;
+
+/**
+ * Receives the measurements of every attempt of every request. Without a listener configured no
+ * measurements are taken at all. The listener is called on the
+ * thread that finished the attempt: the caller closing the response, or the thread completing an
+ * asynchronous call. Keep it fast and do not throw.
+ */
+@FunctionalInterface
+public interface S3RequestListener {
+
+    void onRequestCompleted(S3RequestMetrics metrics);
+
+    static S3RequestListener of(final S3RequestListener... listeners) {
+        final List<S3RequestListener> all = List.of(listeners);
+        return metrics -> {
+            for (final S3RequestListener listener : all) listener.onRequestCompleted(metrics);
+        };
+    }
+
+}
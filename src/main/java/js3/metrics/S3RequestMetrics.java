@@ -0,0 +1,70 @@
+package js3.metrics;
+
+/**
+ * The measurements of one attempt of a request. Durations are in nanoseconds, -1 when the phase
+ * did not happen or could not be observed. The transport hides when the connection is made, so
+ * connectNanos is the time until the transport started to read the request body, which is only
+ * known for requests with a body. For requests without a body the connection time is part of
+ * firstByteNanos.
+ */
+public final class S3RequestMetrics {
+
+    /**
+     * The S3 API operation, like GetObject or UploadPart.
+     */
+    public final String operation;
+    public final String method;
+    public final String path;
+    /**
+     * The number of the attempt, starting at 1. Anything higher is a retry.
+     */
+    public final int attempt;
+    /**
+     * The http status code, or 0 when no response was received.
+     */
+    public final int statusCode;
+    /**
+     * Why the attempt failed, or null when it succeeded.
+     */
+    public final Throwable failure;
+    public final long requestBytes;
+    /**
+     * The number of body bytes the caller read before closing the response.
+     */
+    public final long responseBytes;
+    public final long signNanos;
+    public final long connectNanos;
+    public final long uploadNanos;
+    /**
+     * From the end of the upload, or from sending when there was no body, until the response
+     * headers arrived. Asynchronous calls only see the complete response, they report -1.
+     */
+    public final long firstByteNanos;
+    /**
+     * From the response headers until the response was closed. Asynchronous calls report -1.
+     */
+    public final long bodyNanos;
+    public final long totalNanos;
+
+    public S3RequestMetrics(final String operation, final String method, final String path, final int attempt,
+                            final int statusCode, final Throwable failure, final long requestBytes,
+                            final long responseBytes, final long signNanos, final long connectNanos,
+                            final long uploadNanos, final long firstByteNanos, final long bodyNanos,
+                            final long totalNanos) {
+        this.operation = operation;
+        this.method = method;
+        this.path = path;
+        this.attempt = attempt;
+        this.statusCode = statusCode;
+        this.failure = failure;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.signNanos = signNanos;
+        this.connectNanos = connectNanos;
+        this.uploadNanos = uploadNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.bodyNanos = bodyNanos;
+        this.totalNanos = totalNanos;
+    }
+
+}
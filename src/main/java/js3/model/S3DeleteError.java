@@ -0,0 +1,15 @@
+package js3.model;
+
+public final class S3DeleteError {
+
+    public final String key;
+    public final String code;
+    public final String message;
+
+    public S3DeleteError(final String key, final String code, final String message) {
+        this.key = key;
+        this.code = code;
+        this.message = message;
+    }
+
+}
@@ -0,0 +1,18 @@
+package js3.model;
+
+import java.util.List;
+
+public final class S3ObjectsPage {
+
+    public final List<S3ObjectMetaData> objects;
+    public final List<String> commonPrefixes;
+    public final String nextContinuationToken;
+
+    public S3ObjectsPage(final List<S3ObjectMetaData> objects, final List<String> commonPrefixes,
+                         final String nextContinuationToken) {
+        this.objects = objects;
+        this.commonPrefixes = commonPrefixes;
+        this.nextContinuationToken = nextContinuationToken;
+    }
+
+}
@@ -0,0 +1,19 @@
+package js3.model;
+
+public final class S3Part {
+
+    public final int partNumber;
+    public final String etag;
+    // The checksum of the part when the upload was created with a checksum algorithm, or null
+    public final String checksum;
+
+    public S3Part(final int partNumber, final String etag) {
+        this(partNumber, etag, null);
+    }
+    public S3Part(final int partNumber, final String etag, final String checksum) {
+        this.partNumber = partNumber;
+        this.etag = etag;
+        this.checksum = checksum;
+    }
+
+}
@@ -0,0 +1,37 @@
+package js3.model;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Locale;
+
+public final class S3SyncAction {
+
+    public enum Type { UPLOAD, DOWNLOAD, DELETE_LOCAL, DELETE_REMOTE }
+
+    public final Type type;
+    public final String key;
+    public final Path file;
+    public final long size;
+    public final String reason;
+    // The modification time of the object, which downloads give to the file
+    public final Instant lastModified;
+
+    public S3SyncAction(final Type type, final String key, final Path file, final long size,
+                        final String reason, final Instant lastModified) {
+        this.type = type;
+        this.key = key;
+        this.file = file;
+        this.size = size;
+        this.reason = reason;
+        this.lastModified = lastModified;
+    }
+
+    public boolean isTransfer() {
+        return type == Type.UPLOAD || type == Type.DOWNLOAD;
+    }
+
+    public String toString() {
+        return String.format("%-13s %s (%s, %d bytes)", type.name().toLowerCase(Locale.ROOT).replace('_', ' '), key, reason, size);
+    }
+
+}
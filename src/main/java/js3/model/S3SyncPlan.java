@@ -0,0 +1,58 @@
+package js3.model;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The differences between a directory and a prefix in a bucket, and what a sync would do about
+ * them. Printing the plan before executing it gives a dry run.
+ */
+public final class S3SyncPlan {
+
+    public enum Direction { UPLOAD, DOWNLOAD }
+
+    public final Direction direction;
+    public final Path directory;
+    public final String bucket;
+    public final String prefix;
+    public final List<S3SyncAction> actions;
+    public final long unchanged;
+
+    public S3SyncPlan(final Direction direction, final Path directory, final String bucket, final String prefix,
+                      final List<S3SyncAction> actions, final long unchanged) {
+        this.direction = direction;
+        this.directory = directory;
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.actions = actions;
+        this.unchanged = unchanged;
+    }
+
+    public boolean isEmpty() {
+        return actions.isEmpty();
+    }
+
+    public long getTransferCount() {
+        return actions.stream().filter(S3SyncAction::isTransfer).count();
+    }
+
+    public long getTransferBytes() {
+        return actions.stream().filter(S3SyncAction::isTransfer).mapToLong(action -> action.size).sum();
+    }
+
+    public long getDeleteCount() {
+        return actions.size() - getTransferCount();
+    }
+
+    public String toString() {
+        final var plan = new StringBuilder()
+            .append(direction == Direction.UPLOAD ? "Upload " + directory + " to " : "Download ")
+            .append(bucket).append('/').append(prefix)
+            .append(direction == Direction.DOWNLOAD ? " to " + directory : "")
+            .append(": ").append(getTransferCount()).append(" to transfer (").append(getTransferBytes()).append(" bytes), ")
+            .append(getDeleteCount()).append(" to delete, ").append(unchanged).append(" unchanged");
+        for (final S3SyncAction action : actions) plan.append('\n').append("  ").append(action);
+        return plan.toString();
+    }
+
+}
@@ -0,0 +1,164 @@
+package js3.model;
+
+/**
+ * Select Object Content request options, describing how the object is stored and how the records
+ * should come back. Use the builder to create an instance.
+ */
+public class SelectObjectOptions {
+
+    private String inputFormat;
+    private String compressionType;
+    private String fileHeaderInfo;
+    private String inputFieldDelimiter;
+    private String jsonType;
+    private String outputFormat;
+    private String outputFieldDelimiter;
+    private String recordDelimiter;
+
+    public String getInputFormat() {
+        return inputFormat;
+    }
+
+    public String getCompressionType() {
+        return compressionType;
+    }
+
+    public String getFileHeaderInfo() {
+        return fileHeaderInfo;
+    }
+
+    public String getInputFieldDelimiter() {
+        return inputFieldDelimiter;
+    }
+
+    public String getJsonType() {
+        return jsonType;
+    }
+
+    public String getOutputFormat() {
+        return outputFormat;
+    }
+
+    public String getOutputFieldDelimiter() {
+        return outputFieldDelimiter;
+    }
+
+    public String getRecordDelimiter() {
+        return recordDelimiter;
+    }
+
+    /**
+     * Helps to build SelectObjectOptions objects. Without any settings the object is read as CSV
+     * with a header line and the records come back as JSON lines.
+     */
+    public static class Builder {
+
+        public static final String FORMAT_CSV = "CSV";
+        public static final String FORMAT_JSON = "JSON";
+        public static final String FORMAT_PARQUET = "Parquet";
+
+        public static final String COMPRESSION_NONE = "NONE";
+        public static final String COMPRESSION_GZIP = "GZIP";
+        public static final String COMPRESSION_BZIP2 = "BZIP2";
+
+        /**
+         * The first line names the columns, which the expression can then refer to.
+         */
+        public static final String FILE_HEADER_USE = "USE";
+        public static final String FILE_HEADER_IGNORE = "IGNORE";
+        public static final String FILE_HEADER_NONE = "NONE";
+
+        public static final String JSON_LINES = "LINES";
+        public static final String JSON_DOCUMENT = "DOCUMENT";
+
+        private String inputFormat = FORMAT_CSV;
+        private String compressionType = COMPRESSION_NONE;
+        private String fileHeaderInfo = FILE_HEADER_USE;
+        private String inputFieldDelimiter = ",";
+        private String jsonType = JSON_LINES;
+        private String outputFormat = FORMAT_JSON;
+        private String outputFieldDelimiter = ",";
+        private String recordDelimiter = "\n";
+
+        public Builder(){}
+
+        /**
+         * Reads the object as CSV.
+         * @param fileHeaderInfo One of FILE_HEADER_USE, FILE_HEADER_IGNORE or FILE_HEADER_NONE.
+         * @param fieldDelimiter The character between fields.
+         * @return Builder.
+         */
+        public Builder withCsvInput(final String fileHeaderInfo, final String fieldDelimiter) {
+            this.inputFormat = FORMAT_CSV;
+            this.fileHeaderInfo = fileHeaderInfo;
+            this.inputFieldDelimiter = fieldDelimiter;
+            return this;
+        }
+
+        /**
+         * Reads the object as JSON.
+         * @param jsonType JSON_LINES for one document per line, JSON_DOCUMENT for a single document.
+         * @return Builder.
+         */
+        public Builder withJsonInput(final String jsonType) {
+            this.inputFormat = FORMAT_JSON;
+            this.jsonType = jsonType;
+            return this;
+        }
+
+        public Builder withParquetInput() {
+            this.inputFormat = FORMAT_PARQUET;
+            return this;
+        }
+
+        /**
+         * Sets the compression of the stored object, CSV and JSON objects only.
+         * @param compressionType One of COMPRESSION_NONE, COMPRESSION_GZIP or COMPRESSION_BZIP2.
+         * @return Builder.
+         */
+        public Builder withCompressionType(final String compressionType) {
+            this.compressionType = compressionType;
+            return this;
+        }
+
+        /**
+         * Returns the records as CSV.
+         * @param fieldDelimiter The character between fields.
+         * @return Builder.
+         */
+        public Builder withCsvOutput(final String fieldDelimiter) {
+            this.outputFormat = FORMAT_CSV;
+            this.outputFieldDelimiter = fieldDelimiter;
+            return this;
+        }
+
+        public Builder withJsonOutput() {
+            this.outputFormat = FORMAT_JSON;
+            return this;
+        }
+
+        /**
+         * Sets what separates the returned records.
+         * @param recordDelimiter One or two characters, a newline by default.
+         * @return Builder.
+         */
+        public Builder withRecordDelimiter(final String recordDelimiter) {
+            this.recordDelimiter = recordDelimiter;
+            return this;
+        }
+
+        public SelectObjectOptions build() {
+            final SelectObjectOptions options = new SelectObjectOptions();
+            options.inputFormat = inputFormat;
+            options.compressionType = compressionType;
+            options.fileHeaderInfo = fileHeaderInfo;
+            options.inputFieldDelimiter = inputFieldDelimiter;
+            options.jsonType = jsonType;
+            options.outputFormat = outputFormat;
+            options.outputFieldDelimiter = outputFieldDelimiter;
+            options.recordDelimiter = recordDelimiter;
+            return options;
+        }
+    }
+
+}
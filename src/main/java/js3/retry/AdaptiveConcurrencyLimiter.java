@@ -0,0 +1,100 @@
+package js3.retry;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps the number of requests in flight for everything sharing the limiter, and adapts the cap
+ * to the server: additive increase while requests succeed, multiplicative decrease when the
+ * server throttles. A burst of throttled responses caused by the same overload only halves the
+ * limit once, further decreases wait for the cool down to pass.
+ * <p>
+ * The limit grows by about one for every limit requests that succeed, so after backing off it
+ * climbs back to the capacity of the server in a few round trips per step.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long coolDownNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long lastDecrease;
+
+    public AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, 100, TimeUnit.MILLISECONDS);
+    }
+
+    public AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit,
+                                      final long coolDown, final TimeUnit unit) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.coolDownNanos = unit.toNanos(coolDown);
+        this.lastDecrease = System.nanoTime() - coolDownNanos;
+    }
+
+    /**
+     * Waits until a request may be sent. Every acquire must be followed by one release.
+     */
+    public void acquire() throws InterruptedIOException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) released.await();
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a request slot");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param throttled whether the server answered that it is overloaded.
+     */
+    public void release(final boolean throttled) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (throttled) {
+                final long now = System.nanoTime();
+                if (now - lastDecrease >= coolDownNanos) {
+                    limit = Math.max(minLimit, limit / 2);
+                    lastDecrease = now;
+                }
+            } else {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
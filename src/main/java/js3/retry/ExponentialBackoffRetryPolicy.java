@@ -0,0 +1,37 @@
+package js3.retry;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static js3.retry.S3RetryPolicy.isRetryable;
+
+/**
+ * Retries with exponential backoff and full jitter: the delay before attempt n+1 is drawn at
+ * random between zero and base * 2^(n-1), capped at the maximum. Spreading the retries out keeps
+ * a crowd of throttled callers from coming back at the same moment.
+ */
+public final class ExponentialBackoffRetryPolicy implements S3RetryPolicy {
+
+    public static final ExponentialBackoffRetryPolicy DEFAULT = new ExponentialBackoffRetryPolicy(3, 100, 20_000);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param maxAttempts the total number of attempts, including the first.
+     */
+    public ExponentialBackoffRetryPolicy(final int maxAttempts, final long baseDelayMillis, final long maxDelayMillis) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("At least one attempt is needed");
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public long nextDelayMillis(final int attempt, final boolean idempotent, final IOException failure) {
+        if (attempt >= maxAttempts || !isRetryable(failure, idempotent)) return -1;
+        final long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+}
@@ -0,0 +1,48 @@
+package js3.retry;
+
+import js3.S3Exception;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Decides whether a failed request is sent again, and after how long. Requests with a body that
+ * can not be replayed, like a streamed upload, are never retried whatever the policy says.
+ */
+@FunctionalInterface
+public interface S3RetryPolicy {
+
+    S3RetryPolicy NEVER = (attempt, idempotent, failure) -> -1;
+
+    /**
+     * @param attempt the number of the attempt that failed, starting at 1.
+     * @param idempotent whether sending the request twice has the same effect as sending it once.
+     * @return the delay in milliseconds before the next attempt, or a negative number to give up.
+     */
+    long nextDelayMillis(int attempt, boolean idempotent, IOException failure);
+
+    /**
+     * The server is shedding load, it did not act on the request.
+     */
+    static boolean isThrottled(final IOException failure) {
+        if (!(failure instanceof S3Exception)) return false;
+        final S3Exception e = (S3Exception) failure;
+        return e.statusCode == 503 || e.statusCode == 429 || "SlowDown".equals(e.errorCode);
+    }
+
+    /**
+     * Throttling is always safe to retry. Server errors and failures of the connection can happen
+     * after the request was carried out, so those are only retried for idempotent requests.
+     * An interrupted thread is never retried, a socket timeout is treated as a connection failure.
+     */
+    static boolean isRetryable(final IOException failure, final boolean idempotent) {
+        if (failure instanceof InterruptedIOException && !(failure instanceof SocketTimeoutException)) return false;
+        if (isThrottled(failure)) return true;
+        if (!idempotent) return false;
+        if (!(failure instanceof S3Exception)) return true;
+        final int statusCode = ((S3Exception) failure).statusCode;
+        return statusCode == 500 || statusCode == 502 || statusCode == 504 || statusCode == 408;
+    }
+
+}
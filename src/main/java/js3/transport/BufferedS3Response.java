@@ -0,0 +1,43 @@
+package js3.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import static js3.util.HTTP.getFirstFrom;
+
+/**
+ * A response whose body has been received completely, as used by the asynchronous calls.
+ */
+public final class BufferedS3Response implements S3Response {
+
+    private final int statusCode;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+
+    public BufferedS3Response(final int statusCode, final Map<String, List<String>> headers, final byte[] body) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+    public Map<String, List<String>> headers() {
+        return headers;
+    }
+    public String header(final String name) {
+        return getFirstFrom(headers, name);
+    }
+    public InputStream body() {
+        return new ByteArrayInputStream(body);
+    }
+    public byte[] bytes() {
+        return body;
+    }
+
+    public void close() {}
+
+}
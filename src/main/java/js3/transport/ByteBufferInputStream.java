@@ -0,0 +1,119 @@
+package js3.transport;
+
+import js3.buffer.S3BufferPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
+
+import static js3.internal.Constants.BLOCK_SIZE;
+
+/**
+ * A request body that reads from a ByteBuffer. Transports that can send a buffer as it is, heap,
+ * direct or memory mapped, take it from buffer() instead of reading the stream, so the body is
+ * not copied on the way out. Reading moves a private view of the buffer, never the buffer itself.
+ */
+public final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer remaining;
+    private final S3BufferPool pool;
+    private final IntConsumer progress;
+
+    /**
+     * @param pool supplies the block that direct buffers are copied through when the stream is
+     * transferred to an OutputStream.
+     */
+    public ByteBufferInputStream(final ByteBuffer buffer, final S3BufferPool pool) {
+        this(buffer, pool, null);
+    }
+
+    private ByteBufferInputStream(final ByteBuffer buffer, final S3BufferPool pool, final IntConsumer progress) {
+        this.buffer = buffer.duplicate();
+        this.remaining = buffer.duplicate();
+        this.pool = pool;
+        this.progress = progress;
+    }
+
+    /**
+     * Returns a stream over the same bytes that reports to progress how many bytes were read or
+     * sent, and -1 once the body is done. Unlike wrapping the stream, this keeps the body a
+     * ByteBufferInputStream, so transports still send the buffer without copying it.
+     */
+    public ByteBufferInputStream withProgress(final IntConsumer progress) {
+        return new ByteBufferInputStream(buffer, pool, progress);
+    }
+
+    /**
+     * Transports that send buffer() directly call this with every part they send, and with -1
+     * after the last one.
+     */
+    public void sent(final int count) {
+        if (progress != null) progress.accept(count);
+    }
+
+    /**
+     * Returns a view of the whole body, regardless of how much of the stream has been read.
+     */
+    public ByteBuffer buffer() {
+        return buffer.duplicate();
+    }
+
+    public int read() {
+        if (!remaining.hasRemaining()) {
+            sent(-1);
+            return -1;
+        }
+        sent(1);
+        return remaining.get() & 0xFF;
+    }
+
+    public int read(final byte[] target, final int offset, final int length) {
+        if (length == 0) return 0;
+        if (!remaining.hasRemaining()) {
+            sent(-1);
+            return -1;
+        }
+        final int count = Math.min(length, remaining.remaining());
+        remaining.get(target, offset, count);
+        sent(count);
+        return count;
+    }
+
+    public long skip(final long n) {
+        final int count = (int) Math.max(0, Math.min(n, remaining.remaining()));
+        remaining.position(remaining.position() + count);
+        return count;
+    }
+
+    public int available() {
+        return remaining.remaining();
+    }
+
+    public long transferTo(final OutputStream out) throws IOException {
+        final int count = remaining.remaining();
+        if (remaining.hasArray()) {
+            out.write(remaining.array(), remaining.arrayOffset() + remaining.position(), count);
+            remaining.position(remaining.limit());
+            sent(count);
+            sent(-1);
+            return count;
+        }
+        final byte[] block = pool.acquire(Math.min(BLOCK_SIZE, Math.max(1, count)));
+        try {
+            while (remaining.hasRemaining()) {
+                final int length = Math.min(block.length, remaining.remaining());
+                remaining.get(block, 0, length);
+                out.write(block, 0, length);
+                sent(length);
+            }
+        } finally {
+            pool.release(block);
+        }
+        sent(-1);
+        return count;
+    }
+
+}
@@ -0,0 +1,570 @@
+package js3.transport;
+
+import js3.buffer.S3BufferPool;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static java.net.http.HttpRequest.BodyPublishers.fromPublisher;
+import static java.net.http.HttpRequest.BodyPublishers.noBody;
+import static java.net.http.HttpRequest.BodyPublishers.ofByteArray;
+import static java.net.http.HttpRequest.BodyPublishers.ofInputStream;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static js3.internal.Constants.BLOCK_SIZE;
+import static js3.util.HTTP.isNotModified;
+
+/**
+ * A transport on a shared java.net.http.HttpClient. The client keeps a pool of open connections,
+ * so the TCP and TLS handshakes are paid once per connection instead of once per request. With
+ * HTTP/2 all requests to an endpoint are multiplexed over a single connection.
+ * <p>
+ * The size of the idle pool and the keep-alive timeout are JVM-wide settings of the JDK client,
+ * see the jdk.httpclient.connectionPoolSize and jdk.httpclient.keepalive.timeout system properties.
+ */
+public final class HttpClientTransport implements S3Transport {
+
+    // Direct buffers are handed to the client in slices of this size, so it can apply back pressure
+    private static final int SLICE_SIZE = 256 * 1024;
+    // The JDK client sets these itself and refuses requests that carry them
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private static final Map<String, HttpClientTransport> SHARED = new ConcurrentHashMap<>();
+
+    private final HttpClient client;
+
+    public HttpClientTransport(final HttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Returns a transport that is shared by every client using the same settings.
+     */
+    public static HttpClientTransport sharedTransport(final int connectTimeout, final HttpClient.Version version) {
+        return SHARED.computeIfAbsent(connectTimeout + "/" + version, key -> new HttpClientTransport(HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(connectTimeout))
+            .version(version)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build()));
+    }
+
+    public HttpClient getHttpClient() {
+        return client;
+    }
+
+    public S3Response send(final String method, final URI uri, final Map<String, String> headers,
+                           final InputStream body, final long bodyLength,
+                           final int connectTimeout, final int readTimeout) throws IOException {
+        final CompletableFuture<HttpResponse<InputStream>> exchange = exchange(method, uri, headers, body, bodyLength,
+            readTimeout, info -> new IdleTimeoutInputStream(readTimeout), false);
+        try {
+            return new HttpClientResponse(exchange.get());
+        } catch (InterruptedException e) {
+            exchange.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + method + " " + uri);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Sends the request on the non-blocking side of the HttpClient. No thread waits for the
+     * response, so a few threads can keep thousands of requests in flight. The executor is not
+     * used, the client completes the call on its own threads. The body is collected like
+     * HTTP.readFully collects it, presized from the Content-Length or grown in pooled buffers.
+     */
+    public CompletableFuture<BufferedS3Response> sendAsync(final String method, final URI uri, final Map<String, String> headers,
+                                                           final InputStream body, final long bodyLength,
+                                                           final int connectTimeout, final int readTimeout,
+                                                           final Executor executor, final S3BufferPool pool) {
+        final HttpResponse.BodyHandler<byte[]> handler = info -> new ReadFullySubscriber(
+            // A HEAD or a 304 announces the length of a body it does not send
+            "HEAD".equals(method) || isNotModified(info.statusCode())
+                ? -1 : info.headers().firstValueAsLong("Content-Length").orElse(-1), pool);
+        return exchange(method, uri, headers, body, bodyLength, readTimeout, handler, true)
+            .thenApply(response -> new BufferedS3Response(response.statusCode(), response.headers().map(), response.body()));
+    }
+
+    /**
+     * The read timeout is applied the way a socket applies it: the exchange fails when nothing
+     * arrives for that long. Sending the request body does not count, an upload can take as long
+     * as it takes. The clock starts once the body has been sent and is reset by the response
+     * headers, and by every part of the body when the body is watched here. A body that is handed
+     * out as a stream applies the timeout to each read instead.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> exchange(final String method, final URI uri, final Map<String, String> headers,
+                                                            final InputStream body, final long bodyLength, final int readTimeout,
+                                                            final HttpResponse.BodyHandler<T> handler, final boolean watchBody) {
+        final HttpRequest.BodyPublisher publisher = newBodyPublisher(body, bodyLength);
+        if (readTimeout <= 0) return client.sendAsync(newHttpRequest(method, uri, headers, publisher), handler);
+
+        final boolean hasBody = body != null && bodyLength != 0;
+        final Watchdog watchdog = new Watchdog(readTimeout, hasBody);
+        final CompletableFuture<HttpResponse<T>> exchange = client.sendAsync(
+            newHttpRequest(method, uri, headers, hasBody ? watchdog.watching(publisher) : publisher),
+            watchdog.watching(handler, watchBody));
+        return watchdog.guard(exchange, method + " " + uri);
+    }
+
+    private static HttpRequest newHttpRequest(final String method, final URI uri, final Map<String, String> headers,
+                                              final HttpRequest.BodyPublisher publisher) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(uri).method(method, publisher);
+        for (final var header : headers.entrySet()) {
+            if (!RESTRICTED_HEADERS.contains(header.getKey().toLowerCase())) builder.header(header.getKey(), header.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Buffer bodies are published as they are: heap buffers as one array, direct and mapped buffers
+     * as slices of themselves. Anything else is read from the stream.
+     */
+    private static HttpRequest.BodyPublisher newBodyPublisher(final InputStream body, final long bodyLength) {
+        if (body == null || bodyLength == 0) return noBody();
+        if (!(body instanceof ByteBufferInputStream)) return fromPublisher(ofInputStream(() -> body), bodyLength);
+
+        final ByteBufferInputStream stream = (ByteBufferInputStream) body;
+        final ByteBuffer buffer = stream.buffer();
+        return reportingSent(buffer.hasArray()
+            ? ofByteArray(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining())
+            : fromPublisher(new ByteBufferPublisher(buffer), bodyLength), stream);
+    }
+
+    /**
+     * The client never reads a buffer body as a stream, so the parts it sends are reported to
+     * the stream here, for whoever measures the upload.
+     */
+    private static HttpRequest.BodyPublisher reportingSent(final HttpRequest.BodyPublisher publisher,
+                                                           final ByteBufferInputStream stream) {
+        return new HttpRequest.BodyPublisher() {
+            public long contentLength() {
+                return publisher.contentLength();
+            }
+            public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+                publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+                    public void onSubscribe(final Flow.Subscription subscription) {
+                        subscriber.onSubscribe(subscription);
+                    }
+                    public void onNext(final ByteBuffer item) {
+                        stream.sent(item.remaining());
+                        subscriber.onNext(item);
+                    }
+                    public void onError(final Throwable throwable) {
+                        subscriber.onError(throwable);
+                    }
+                    public void onComplete() {
+                        stream.sent(-1);
+                        subscriber.onComplete();
+                    }
+                });
+            }
+        };
+    }
+
+    private static final class ByteBufferPublisher implements Flow.Publisher<ByteBuffer> {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferPublisher(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+            final ByteBuffer remaining = buffer.duplicate();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private long demand;
+                private boolean emitting;
+                private boolean cancelled;
+
+                public void request(final long n) {
+                    if (n <= 0) {
+                        cancel();
+                        subscriber.onError(new IllegalArgumentException("Demand must be positive, got " + n));
+                        return;
+                    }
+                    synchronized (this) {
+                        if (cancelled) return;
+                        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                        // onNext may ask for more, the loop further down picks that up
+                        if (emitting) return;
+                        emitting = true;
+                    }
+                    while (true) {
+                        synchronized (this) {
+                            if (cancelled || demand == 0) {
+                                emitting = false;
+                                return;
+                            }
+                            demand--;
+                        }
+                        final int length = Math.min(SLICE_SIZE, remaining.remaining());
+                        final ByteBuffer slice = remaining.slice().limit(length);
+                        remaining.position(remaining.position() + length);
+                        subscriber.onNext(slice);
+                        if (!remaining.hasRemaining()) {
+                            cancel();
+                            subscriber.onComplete();
+                            return;
+                        }
+                    }
+                }
+
+                public synchronized void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+
+    }
+
+    /**
+     * Fails an exchange on which nothing happened for the read timeout. Checks are scheduled on
+     * the shared delayed executor, no thread waits on the exchange.
+     */
+    private static final class Watchdog {
+
+        private final int readTimeout;
+        private final long timeoutNanos;
+        private volatile boolean sending;
+        private volatile long lastActivity = System.nanoTime();
+
+        private Watchdog(final int readTimeout, final boolean sending) {
+            this.readTimeout = readTimeout;
+            this.timeoutNanos = MILLISECONDS.toNanos(readTimeout);
+            this.sending = sending;
+        }
+
+        private void touch() {
+            lastActivity = System.nanoTime();
+        }
+
+        private HttpRequest.BodyPublisher watching(final HttpRequest.BodyPublisher publisher) {
+            return new HttpRequest.BodyPublisher() {
+                public long contentLength() {
+                    return publisher.contentLength();
+                }
+                public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+                    publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+                        public void onSubscribe(final Flow.Subscription subscription) {
+                            subscriber.onSubscribe(subscription);
+                        }
+                        public void onNext(final ByteBuffer item) {
+                            subscriber.onNext(item);
+                        }
+                        public void onError(final Throwable throwable) {
+                            subscriber.onError(throwable);
+                        }
+                        public void onComplete() {
+                            touch();
+                            sending = false;
+                            subscriber.onComplete();
+                        }
+                    });
+                }
+            };
+        }
+
+        private <T> HttpResponse.BodyHandler<T> watching(final HttpResponse.BodyHandler<T> handler, final boolean watchBody) {
+            return info -> {
+                touch();
+                // The server may answer before it has read the whole body
+                sending = false;
+                final HttpResponse.BodySubscriber<T> subscriber = handler.apply(info);
+                if (!watchBody) return subscriber;
+                return new HttpResponse.BodySubscriber<>() {
+                    public CompletionStage<T> getBody() {
+                        return subscriber.getBody();
+                    }
+                    public void onSubscribe(final Flow.Subscription subscription) {
+                        subscriber.onSubscribe(subscription);
+                    }
+                    public void onNext(final List<ByteBuffer> item) {
+                        touch();
+                        subscriber.onNext(item);
+                    }
+                    public void onError(final Throwable throwable) {
+                        subscriber.onError(throwable);
+                    }
+                    public void onComplete() {
+                        subscriber.onComplete();
+                    }
+                };
+            };
+        }
+
+        private <T> CompletableFuture<HttpResponse<T>> guard(final CompletableFuture<HttpResponse<T>> exchange,
+                                                             final String description) {
+            final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+            exchange.whenComplete((response, e) -> {
+                if (e != null) result.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+                else if (!result.complete(response) && response.body() instanceof Closeable) {
+                    // The response arrived just after the timeout fired
+                    try {
+                        ((Closeable) response.body()).close();
+                    } catch (IOException ignored) {}
+                }
+            });
+            result.whenComplete((response, e) -> {
+                if (result.isCancelled()) exchange.cancel(true);
+            });
+            check(exchange, result, description, timeoutNanos);
+            return result;
+        }
+
+        private <T> void check(final CompletableFuture<HttpResponse<T>> exchange, final CompletableFuture<HttpResponse<T>> result,
+                               final String description, final long delayNanos) {
+            CompletableFuture.delayedExecutor(delayNanos, NANOSECONDS).execute(() -> {
+                if (result.isDone()) return;
+                final long idle = System.nanoTime() - lastActivity;
+                if (sending || idle < timeoutNanos) {
+                    check(exchange, result, description, sending ? timeoutNanos : timeoutNanos - idle);
+                    return;
+                }
+                if (result.completeExceptionally(new HttpTimeoutException(description
+                        + " received nothing for " + readTimeout + "ms")))
+                    exchange.cancel(true);
+            });
+        }
+
+    }
+
+    /**
+     * The response body as a stream that applies the read timeout to each read, like the stream
+     * of a socket does. The body is requested one list of buffers at a time, as it is read.
+     */
+    private static final class IdleTimeoutInputStream extends InputStream implements HttpResponse.BodySubscriber<InputStream> {
+
+        // Compared by identity, an empty list from the client is not the end
+        private static final List<ByteBuffer> END = new ArrayList<>(0);
+        private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+        private final BlockingQueue<List<ByteBuffer>> queue = new LinkedBlockingQueue<>();
+        private final int readTimeout;
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable failure;
+        private volatile boolean closed;
+
+        private Iterator<ByteBuffer> buffers = Collections.emptyIterator();
+        private ByteBuffer current = EMPTY;
+        private boolean finished;
+
+        private IdleTimeoutInputStream(final int readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public CompletionStage<InputStream> getBody() {
+            return CompletableFuture.completedStage(this);
+        }
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (closed) subscription.cancel();
+            else subscription.request(1);
+        }
+        public void onNext(final List<ByteBuffer> item) {
+            queue.add(item);
+        }
+        public void onError(final Throwable throwable) {
+            failure = throwable;
+            queue.add(END);
+        }
+        public void onComplete() {
+            queue.add(END);
+        }
+
+        public int read() throws IOException {
+            return nextBuffer() ? current.get() & 0xFF : -1;
+        }
+
+        public int read(final byte[] target, final int offset, final int length) throws IOException {
+            if (length == 0) return 0;
+            if (!nextBuffer()) return -1;
+            final int count = Math.min(length, current.remaining());
+            current.get(target, offset, count);
+            return count;
+        }
+
+        public int available() {
+            return current.remaining();
+        }
+
+        public void close() {
+            if (closed) return;
+            closed = true;
+            final Flow.Subscription subscription = this.subscription;
+            if (subscription != null && !finished) subscription.cancel();
+            queue.clear();
+        }
+
+        private boolean nextBuffer() throws IOException {
+            while (!current.hasRemaining()) {
+                if (buffers.hasNext()) {
+                    current = buffers.next();
+                    continue;
+                }
+                if (finished) return false;
+                if (closed) throw new IOException("Stream closed");
+
+                final List<ByteBuffer> next;
+                try {
+                    next = readTimeout > 0 ? queue.poll(readTimeout, MILLISECONDS) : queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading the response body");
+                }
+                if (next == null) {
+                    close();
+                    throw new SocketTimeoutException("Read timed out, received nothing for " + readTimeout + "ms");
+                }
+                if (next == END) {
+                    finished = true;
+                    if (failure == null) return false;
+                    throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+                }
+                buffers = next.iterator();
+                subscription.request(1);
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Collects an async response body. With a known length the bytes go straight into the result
+     * array, without one into pooled buffers that double as needed and are copied out at the end.
+     */
+    private static final class ReadFullySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final long contentLength;
+        private final S3BufferPool pool;
+        private Flow.Subscription subscription;
+        private byte[] buffer;
+        private int length;
+
+        private ReadFullySubscriber(final long contentLength, final S3BufferPool pool) {
+            this.contentLength = contentLength >= 0 && contentLength < Integer.MAX_VALUE - 8 ? contentLength : -1;
+            this.pool = pool;
+            if (this.contentLength != -1) buffer = new byte[(int) contentLength];
+        }
+
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        public void onNext(final List<ByteBuffer> items) {
+            if (body.isDone()) return;
+            for (final ByteBuffer item : items) {
+                final int count = item.remaining();
+                if (length + count > (contentLength != -1 ? contentLength : Integer.MAX_VALUE - 8)) {
+                    subscription.cancel();
+                    fail(new IOException(contentLength != -1
+                        ? "Body is longer than its Content-Length of " + contentLength : "Body is too large for an array"));
+                    return;
+                }
+                if (contentLength == -1) ensureCapacity(length + count);
+                item.get(buffer, length, count);
+                length += count;
+            }
+        }
+
+        public void onError(final Throwable throwable) {
+            fail(throwable);
+        }
+
+        public void onComplete() {
+            if (body.isDone()) return;
+            if (contentLength != -1) {
+                if (length < contentLength)
+                    body.completeExceptionally(new EOFException("Body ended after " + length
+                        + " of its Content-Length of " + contentLength + " bytes"));
+                else body.complete(buffer);
+                return;
+            }
+            final byte[] data = buffer == null ? new byte[0] : Arrays.copyOf(buffer, length);
+            release();
+            body.complete(data);
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (buffer == null) buffer = pool.acquire(Math.max(BLOCK_SIZE, capacity));
+            if (buffer.length >= capacity) return;
+            final byte[] larger = pool.acquire((int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * buffer.length, capacity)));
+            System.arraycopy(buffer, 0, larger, 0, length);
+            pool.release(buffer);
+            buffer = larger;
+        }
+
+        private void fail(final Throwable failure) {
+            if (contentLength == -1) release();
+            body.completeExceptionally(failure);
+        }
+
+        private void release() {
+            if (buffer != null) pool.release(buffer);
+            buffer = null;
+        }
+
+    }
+
+    private static final class HttpClientResponse implements S3Response {
+
+        private final HttpResponse<InputStream> response;
+
+        private HttpClientResponse(final HttpResponse<InputStream> response) {
+            this.response = response;
+        }
+
+        public int statusCode() {
+            return response.statusCode();
+        }
+        public Map<String, List<String>> headers() {
+            return response.headers().map();
+        }
+        public String header(final String name) {
+            final HttpHeaders headers = response.headers();
+            return headers.firstValue(name).orElse(null);
+        }
+        public InputStream body() {
+            return response.body();
+        }
+
+    }
+
+}
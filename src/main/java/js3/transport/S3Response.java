@@ -0,0 +1,28 @@
+package js3.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The status, headers and body of an S3 call. The body is read straight from the connection, so
+ * the response must be closed to hand the connection back for reuse.
+ */
+public interface S3Response extends Closeable {
+
+    int statusCode();
+    Map<String, List<String>> headers();
+    InputStream body() throws IOException;
+
+    /**
+     * Returns the first value of the header, the name is matched without regard to case.
+     */
+    String header(String name);
+
+    default void close() throws IOException {
+        body().close();
+    }
+
+}
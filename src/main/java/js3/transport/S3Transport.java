@@ -0,0 +1,54 @@
+package js3.transport;
+
+import js3.buffer.S3BufferPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static js3.util.HTTP.isNotModified;
+import static js3.util.HTTP.parseContentLength;
+import static js3.util.HTTP.readFully;
+
+/**
+ * Sends a fully signed request. The transport decides how connections are made and reused, it
+ * does not touch the signed headers other than leaving out the ones the http stack sets itself.
+ */
+public interface S3Transport {
+
+    /**
+     * @param body the request body, or null when there is none.
+     * @param bodyLength the exact number of bytes the body will produce.
+     */
+    S3Response send(String method, URI uri, Map<String, String> headers, InputStream body, long bodyLength,
+                    int connectTimeout, int readTimeout) throws IOException;
+
+    /**
+     * Sends the request without blocking the caller. The future completes once the whole response
+     * has been received. Transports without a non-blocking mode run the blocking call on a worker
+     * thread instead.
+     * @param executor runs the blocking call of transports without a non-blocking mode.
+     * @param pool supplies the buffers the response is read into.
+     */
+    default CompletableFuture<BufferedS3Response> sendAsync(final String method, final URI uri, final Map<String, String> headers,
+                                                            final InputStream body, final long bodyLength,
+                                                            final int connectTimeout, final int readTimeout,
+                                                            final Executor executor, final S3BufferPool pool) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (final S3Response response = send(method, uri, headers, body, bodyLength, connectTimeout, readTimeout)) {
+                // A HEAD or a 304 announces the length of a body it does not send
+                final long length = "HEAD".equals(method) || isNotModified(response.statusCode())
+                    ? -1 : parseContentLength(response.header("Content-Length"));
+                return new BufferedS3Response(response.statusCode(), response.headers(),
+                    readFully(response.body(), length, pool));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+}
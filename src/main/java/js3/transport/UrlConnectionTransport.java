@@ -0,0 +1,82 @@
+package js3.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The original transport built on HttpURLConnection. Connections are reused through the JDK
+ * keep-alive cache when a response body is read to the end and closed.
+ */
+public final class UrlConnectionTransport implements S3Transport {
+
+    public static final UrlConnectionTransport INSTANCE = new UrlConnectionTransport();
+
+    public S3Response send(final String method, final URI uri, final Map<String, String> headers,
+                           final InputStream body, final long bodyLength,
+                           final int connectTimeout, final int readTimeout) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        try {
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            connection.setRequestMethod(method);
+            headers.forEach(connection::setRequestProperty);
+            if (body != null && bodyLength > 0) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(bodyLength);
+                try (final OutputStream out = connection.getOutputStream()) {
+                    body.transferTo(out);
+                }
+            }
+            return new UrlConnectionResponse(connection, connection.getResponseCode());
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    private static final class UrlConnectionResponse implements S3Response {
+
+        private final HttpURLConnection connection;
+        private final int statusCode;
+        private InputStream body;
+
+        private UrlConnectionResponse(final HttpURLConnection connection, final int statusCode) {
+            this.connection = connection;
+            this.statusCode = statusCode;
+        }
+
+        public int statusCode() {
+            return statusCode;
+        }
+        public Map<String, List<String>> headers() {
+            return connection.getHeaderFields();
+        }
+        public String header(final String name) {
+            return connection.getHeaderField(name);
+        }
+
+        public InputStream body() throws IOException {
+            if (body == null) {
+                final InputStream stream = statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
+                body = stream != null ? stream : InputStream.nullInputStream();
+            }
+            return body;
+        }
+
+        public void close() throws IOException {
+            try {
+                body().close();
+            } catch (IOException e) {
+                connection.disconnect();
+                throw e;
+            }
+        }
+
+    }
+
+}
@@ -2,12 +2,31 @@ package js3.util;
 
 public enum Coding {;
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     public static String encodeHex(final byte[] data) {
-        final StringBuilder hexString = new StringBuilder();
-        for (final byte rawByte : data) {
-            hexString.append(String.format("%02x", rawByte & 0XFF));
+        final char[] hex = new char[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(data[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[data[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    public static String encodeXml(final String text) {
+        final StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            switch (ch) {
+                case '&' -> builder.append("&amp;");
+                case '<' -> builder.append("&lt;");
+                case '>' -> builder.append("&gt;");
+                case '"' -> builder.append("&quot;");
+                case '\'' -> builder.append("&apos;");
+                default -> builder.append(ch);
+            }
         }
-        return hexString.toString().toLowerCase();
+        return builder.toString();
     }
 
 }
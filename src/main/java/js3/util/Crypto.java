@@ -10,6 +10,10 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 public enum Crypto {;
 
+    // Looking up a provider and building a new instance is much more expensive than the hash itself
+    private static final ThreadLocal<Mac> HMAC_SHA256 = ThreadLocal.withInitial(Crypto::newHmacSha256);
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(Crypto::newSha256);
+
     public static byte[] hmacSha256(final String data, final byte[] key) {
         return hmacSha256(data.getBytes(UTF_8), key);
     }
@@ -20,12 +24,11 @@ public enum Crypto {;
 
     public static byte[] hmacSha256(final byte[] data, final byte[] key) {
         try {
-            final Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-            final SecretKeySpec secret_key = new SecretKeySpec(key, "HmacSHA256");
-            sha256_HMAC.init(secret_key);
+            final Mac sha256_HMAC = HMAC_SHA256.get();
+            sha256_HMAC.init(new SecretKeySpec(key, "HmacSHA256"));
             return sha256_HMAC.doFinal(data);
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            throw new RuntimeException("Platform not sane, missing sha256 or failing to construct key", e);
+        } catch (InvalidKeyException e) {
+            throw new RuntimeException("Platform not sane, failing to construct key", e);
         }
     }
 
@@ -33,11 +36,40 @@ public enum Crypto {;
         return sha256(data.getBytes(UTF_8));
     }
     public static byte[] sha256(final byte[] data) {
+        return sha256(data, 0, data.length);
+    }
+    public static byte[] sha256(final byte[] data, final int offset, final int length) {
+        final MessageDigest digest = SHA256.get();
+        digest.update(data, offset, length);
+        return digest.digest();
+    }
+
+    public static byte[] md5(final byte[] data) {
+        return newMd5().digest(data);
+    }
+
+    public static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Platform doesn't support MD5", e);
+        }
+    }
+
+    public static MessageDigest newSha256() {
         try {
-            return MessageDigest.getInstance("SHA-256").digest(data);
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("Platform doesn't support SHA-256", e);
         }
     }
 
+    public static Mac newHmacSha256() {
+        try {
+            return Mac.getInstance("HmacSHA256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Platform not sane, missing sha256", e);
+        }
+    }
+
 }
@@ -1,15 +1,19 @@
 package js3.util;
 
-import java.io.ByteArrayOutputStream;
+import js3.buffer.S3BufferPool;
+
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static js3.internal.Constants.BLOCK_SIZE;
+import static js3.internal.Constants.DEFAULT_BUFFER_POOL;
 
 public enum HTTP {;
 
@@ -42,23 +46,110 @@ public enum HTTP {;
         return hexString.toString().toUpperCase();
     }
 
-    public static boolean isSuccessful(final HttpURLConnection connection) throws IOException {
-        final int responseCode = connection.getResponseCode();
+    public static boolean isSuccessful(final int responseCode) {
         return responseCode >= 200 && responseCode <= 299;
     }
 
+    public static boolean isNotModified(final int responseCode) {
+        return responseCode == 304;
+    }
+
     public static byte[] readFully(final InputStream input) throws IOException {
-        final byte[] buffer = new byte[BLOCK_SIZE];
+        return readFully(input, -1, DEFAULT_BUFFER_POOL);
+    }
+
+    /**
+     * Reads the stream to the end. With a known length the result is allocated once at its final
+     * size and filled in place. Without one the data goes into pooled buffers that double as
+     * needed, and is copied out once at the end.
+     * @param contentLength the length of the body, or -1 when it is not known.
+     * @throws EOFException when the body ends before its Content-Length.
+     */
+    public static byte[] readFully(final InputStream input, final long contentLength, final S3BufferPool pool) throws IOException {
+        if (contentLength >= 0 && contentLength < Integer.MAX_VALUE - 8) {
+            final byte[] data = new byte[(int) contentLength];
+            int length = 0;
+            int read; while (length < data.length && (read = input.read(data, length, data.length - length)) != -1) {
+                length += read;
+            }
+            if (length < data.length)
+                throw new EOFException("Body ended after " + length + " of its Content-Length of " + contentLength + " bytes");
+            // Reading up to the end also lets wrapping streams, like checksum checks, see the end
+            if (input.read() != -1) throw new IOException("Body is longer than its Content-Length of " + contentLength);
+            return data;
+        }
+
+        byte[] buffer = pool.acquire(BLOCK_SIZE);
+        try {
+            int length = 0;
+            while (true) {
+                if (length == buffer.length) {
+                    // A full buffer may hold the whole body, growing is only needed when more follows
+                    final int next = input.read();
+                    if (next == -1) return Arrays.copyOf(buffer, length);
+                    if (length >= Integer.MAX_VALUE - 8) throw new IOException("Body is too large for an array");
+                    final byte[] larger = pool.acquire((int) Math.min(Integer.MAX_VALUE - 8, 2L * length));
+                    System.arraycopy(buffer, 0, larger, 0, length);
+                    pool.release(buffer);
+                    buffer = larger;
+                    buffer[length++] = (byte) next;
+                }
+                final int read = input.read(buffer, length, buffer.length - length);
+                if (read == -1) return Arrays.copyOf(buffer, length);
+                length += read;
+            }
+        } finally {
+            pool.release(buffer);
+        }
+    }
 
-        try (final ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            int read; while ((read = input.read(buffer)) != -1) {
-                baos.write(buffer, 0 , read);
+    /**
+     * Reads the stream into the buffer from its position on. Heap buffers are filled in place,
+     * direct buffers through a pooled block.
+     * @return the number of bytes read.
+     * @throws IOException when the stream holds more than the buffer has room for.
+     */
+    public static int readFully(final InputStream input, final ByteBuffer target, final S3BufferPool pool) throws IOException {
+        final int start = target.position();
+        if (target.hasArray()) {
+            final byte[] array = target.array();
+            int read; while (target.hasRemaining()
+                    && (read = input.read(array, target.arrayOffset() + target.position(), target.remaining())) != -1) {
+                target.position(target.position() + read);
+            }
+        } else {
+            final byte[] buffer = pool.acquire(Math.max(1, Math.min(BLOCK_SIZE, target.remaining())));
+            try {
+                int read; while (target.hasRemaining()
+                        && (read = input.read(buffer, 0, Math.min(buffer.length, target.remaining()))) != -1) {
+                    target.put(buffer, 0, read);
+                }
+            } finally {
+                pool.release(buffer);
             }
-            return baos.toByteArray();
+        }
+        if (!target.hasRemaining() && input.read() != -1) throw new IOException("Body does not fit in the buffer");
+        return target.position() - start;
+    }
+
+    /**
+     * Returns the Content-Length of a response, or -1 when it is missing or not a number.
+     */
+    public static long parseContentLength(final String header) {
+        if (header == null) return -1;
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return -1;
         }
     }
 
     public static String getFirstFrom(final Map<String, List<String>> headers, final String name) {
-        return headers.containsKey(name) ? headers.get(name).get(0) : null;
+        if (headers.containsKey(name)) return headers.get(name).get(0);
+        // Header names are case-insensitive, servers don't all use the canonical capitalization
+        for (final var header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) return header.getValue().get(0);
+        }
+        return null;
     }
 }